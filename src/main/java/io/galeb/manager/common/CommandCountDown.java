@@ -1,6 +1,6 @@
 package io.galeb.manager.common;
 
-import io.galeb.manager.engine.util.CounterDownLatch;
+import io.galeb.manager.engine.util.FixTracker;
 
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -8,30 +8,30 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public enum CommandCountDown {
 
     SEND_TO_QUEUE {
-        public boolean applied(String[] apis) {
+        public boolean applied(long farmId, String[] apis) {
             final AtomicBoolean applied = new AtomicBoolean(true);
             Arrays.stream(apis).forEach(api -> {
-                Integer counter = CounterDownLatch.get(api);
+                Integer counter = FixTracker.pending(farmId, api);
                 applied.set(applied.get() && counter == null);
             });
             return applied.get();
         }
     },
     STILL_SYNCHRONIZING {
-        public boolean applied(String[] apis) {
+        public boolean applied(long farmId, String[] apis) {
             final AtomicBoolean applied = new AtomicBoolean(false);
             Arrays.stream(apis).forEach(api -> {
-                Integer counter = CounterDownLatch.get(api);
-                applied.set(applied.get() || (counter != null && (counter > 0 || counter == -1)));
+                Integer counter = FixTracker.pending(farmId, api);
+                applied.set(applied.get() || (counter != null && (counter > 0 || counter == FixTracker.DIFFING)));
             });
             return applied.get();
         }
     },
     RELEASE {
-        public boolean applied(String[] apis) {
+        public boolean applied(long farmId, String[] apis) {
             final AtomicBoolean applied = new AtomicBoolean(true);
             Arrays.stream(apis).forEach(api -> {
-                Integer counter = CounterDownLatch.get(api);
+                Integer counter = FixTracker.pending(farmId, api);
                 applied.set(applied.get() && (counter != null && counter == 0));
             });
             return applied.get();
@@ -39,15 +39,15 @@ public enum CommandCountDown {
     },
     NONE {
         @Override
-        public boolean applied(String[] apis) {
+        public boolean applied(long farmId, String[] apis) {
             return false;
         }
     };
-    public abstract boolean applied(String[] apis);
+    public abstract boolean applied(long farmId, String[] apis);
 
-    public static CommandCountDown getCommandApplied(String[] apis) {
+    public static CommandCountDown getCommandApplied(long farmId, String[] apis) {
         for (CommandCountDown comm : values()) {
-            if (comm.applied(apis)) {
+            if (comm.applied(farmId, apis)) {
                 return comm;
             }
         }
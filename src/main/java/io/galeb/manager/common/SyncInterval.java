@@ -0,0 +1,81 @@
+/*
+ * Galeb - Load Balance as a Service Plataform
+ *
+ * Copyright (C) 2014-2016 Globo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ */
+package io.galeb.manager.common;
+
+import io.galeb.manager.cache.DistMap;
+import org.springframework.stereotype.Service;
+
+import java.io.Serializable;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Per-farm check interval, shared by the cluster through the DistMap. It drops
+ * to the minimum when a sync needed fixes (or failed) and doubles, up to the
+ * maximum, each time a sync finds the farm consistent. Value: "interval:nextDueAt".
+ */
+@Service
+public final class SyncInterval implements Serializable {
+
+    private static final DistMap DIST_MAP = DistMap.getInstance();
+
+    private static final String CACHE_NAME = SyncInterval.class.getSimpleName();
+    private static final String SEP = ":";
+
+    public static final long MIN_INTERVAL = Long.parseLong(System.getProperty("io.galeb.sync.interval.min", "5000"));
+    public static final long MAX_INTERVAL = Math.max(MIN_INTERVAL,
+            Long.parseLong(System.getProperty("io.galeb.sync.interval.max", "300000")));
+
+    public boolean isDue(String farmIdName) {
+        final long[] state = read(farmIdName);
+        return state == null || currentTimeMillis() >= state[1];
+    }
+
+    public long intervalOf(String farmIdName) {
+        final long[] state = read(farmIdName);
+        return state != null ? state[0] : MIN_INTERVAL;
+    }
+
+    public void synced(String farmIdName, boolean consistent) {
+        final long interval = consistent ? Math.min(MAX_INTERVAL, intervalOf(farmIdName) * 2) : MIN_INTERVAL;
+        write(farmIdName, interval, currentTimeMillis() + interval);
+    }
+
+    public void changed(String farmIdName) {
+        write(farmIdName, MIN_INTERVAL, currentTimeMillis());
+    }
+
+    private long[] read(String farmIdName) {
+        final String value = DIST_MAP.get(CACHE_NAME, farmIdName);
+        if (value == null) {
+            return null;
+        }
+        final String[] fields = value.split(SEP);
+        try {
+            return new long[] { Long.parseLong(fields[0]), Long.parseLong(fields[1]) };
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private void write(String farmIdName, long interval, long nextDueAt) {
+        DIST_MAP.put(CACHE_NAME, farmIdName, interval + SEP + nextDueAt);
+    }
+}
@@ -18,6 +18,8 @@ import io.galeb.manager.common.JsonMapper;
 import io.galeb.manager.entity.Farm;
 import io.galeb.manager.repository.FarmRepository;
 
+import java.util.Collections;
+
 @RestController
 @RequestMapping(value="/reload")
 public class ReloadController {
@@ -36,7 +38,8 @@ public class ReloadController {
         JsonMapper json = new JsonMapper();
         Farm farm = farmRepository.findOne(id);
         if (farm != null) {
-            farmQueue.sendToQueue(FarmQueue.QUEUE_RELOAD, farm);
+            farmQueue.sendToOwner(FarmQueue.QUEUE_RELOAD, farm, Collections.emptyMap(),
+                    "ID:farm-" + farm.getId() + "-reload-" + System.currentTimeMillis());
             result = json.putString("farm", farm.getName()).putString("status", "accept").toString();
         } else {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
@@ -0,0 +1,43 @@
+package io.galeb.manager.controller;
+
+import io.galeb.manager.engine.listeners.FarmEngine;
+import io.galeb.manager.engine.util.SyncPlan;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.galeb.manager.entity.Farm;
+import io.galeb.manager.repository.FarmRepository;
+
+@RestController
+@RequestMapping(value="/syncplan", produces = MediaType.APPLICATION_JSON_VALUE)
+public class SyncPlanController {
+
+    private static final Log LOGGER = LogFactory.getLog(SyncPlanController.class);
+
+    @Autowired private FarmRepository farmRepository;
+    @Autowired private FarmEngine farmEngine;
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RequestMapping(value="/{id}", method = RequestMethod.GET)
+    public ResponseEntity<SyncPlan> plan(@PathVariable long id) throws Exception {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        LOGGER.warn("Sync Plan (dry run) called by " + authentication.getName());
+        Farm farm = farmRepository.findOne(id);
+        if (farm == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(farmEngine.plan(farm), HttpStatus.OK);
+    }
+
+}
@@ -43,7 +43,7 @@ public class UnlockController {
             String[] apis = farm.getApi().split(",");
             statusDist.updateNewStatus(farm.idName(), false);
 
-            lockerManager.release(farm.idName(),apis);
+            lockerManager.forceRelease(farm, apis);
 
             result = json.putString("farm", farm.getName()).putString("status", "accept").toString();
         } else {
@@ -0,0 +1,63 @@
+/*
+ *   Galeb - Load Balance as a Service Plataform
+ *
+ *   Copyright (C) 2014-2015 Globo.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.galeb.manager.engine.driver;
+
+import io.galeb.manager.engine.driver.Driver.ActionOnDiff;
+
+/**
+ * One action needed to make the farm match the manager.
+ */
+public final class DiffEntry {
+
+    private final ActionOnDiff action;
+    private final EntityKey key;
+
+    public DiffEntry(ActionOnDiff action, EntityKey key) {
+        this.action = action;
+        this.key = key;
+    }
+
+    public ActionOnDiff getAction() {
+        return action;
+    }
+
+    public EntityKey getKey() {
+        return key;
+    }
+
+    public String getId() {
+        return key.getId();
+    }
+
+    public String getParentId() {
+        return key.getParentId();
+    }
+
+    public String getEntityType() {
+        return key.getEntityType();
+    }
+
+    @Override
+    public String toString() {
+        return "{ ACTION: '" + action
+                + "', ID: '" + key.getId()
+                + "', PARENT_ID: '" + key.getParentId()
+                + "', ENTITY_TYPE: '" + key.getEntityType() + "' }";
+    }
+}
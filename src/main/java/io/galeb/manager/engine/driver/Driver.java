@@ -19,7 +19,12 @@
 package io.galeb.manager.engine.driver;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import io.galeb.manager.common.Properties;
 
@@ -34,6 +39,22 @@ public interface Driver {
         UPDATE
     }
 
+    /**
+     * Result of each write of createAll, updateAll and removeAll.
+     */
+    enum WriteResult {
+        /** applied by the farm */
+        DONE,
+        /** not applied yet, handed to the retry queue of the farm */
+        QUEUED,
+        /** refused by the farm, fenced off or dropped */
+        FAILED;
+
+        public static WriteResult of(boolean done) {
+            return done ? DONE : FAILED;
+        }
+    }
+
     default EntityFarm info(Properties properties) {
         return () -> "";
     }
@@ -54,17 +75,64 @@ public interface Driver {
         return true;
     }
 
-    default Map<String, Map<String, Object>> diff(Properties properties,
-              Map<String, Map<String, Map<String, String>>> getAll) throws Exception {
-        return Collections.emptyMap();
+    /**
+     * Drops what the driver keeps of the farm API between calls, once the farm is
+     * reloaded or removed.
+     */
+    default void forget(String api) {
+        // nothing kept
+    }
+
+    default CompletableFuture<Boolean> existAsync(Properties properties) {
+        return CompletableFuture.completedFuture(exist(properties));
+    }
+
+    default CompletableFuture<Boolean> createAsync(Properties properties) {
+        return CompletableFuture.completedFuture(create(properties));
+    }
+
+    default CompletableFuture<Boolean> updateAsync(Properties properties) {
+        return CompletableFuture.completedFuture(update(properties));
+    }
+
+    default CompletableFuture<Boolean> removeAsync(Properties properties) {
+        return CompletableFuture.completedFuture(remove(properties));
+    }
+
+    default List<WriteResult> createAll(List<Properties> propertiesList) {
+        return propertiesList.stream().map(properties -> WriteResult.of(create(properties))).collect(Collectors.toList());
+    }
+
+    default List<WriteResult> updateAll(List<Properties> propertiesList) {
+        return propertiesList.stream().map(properties -> WriteResult.of(update(properties))).collect(Collectors.toList());
+    }
+
+    default List<WriteResult> removeAll(List<Properties> propertiesList) {
+        return propertiesList.stream().map(properties -> WriteResult.of(remove(properties))).collect(Collectors.toList());
+    }
+
+    default List<DiffEntry> diff(Properties properties,
+              Map<String, Map<EntityKey, RemoteEntity>> getAll) throws Exception {
+        return Collections.emptyList();
     }
 
     default Driver addResource(Object resource) {
         return this;
     }
 
-    default Map<String,Map<String,Map<String,String>>> getAll(Properties properties) throws Exception {
+    default Map<String, Map<EntityKey, RemoteEntity>> getAll(Properties properties) throws Exception {
         return Collections.emptyMap();
     }
 
+    default Map<String, Map<EntityKey, RemoteEntity>> getByIds(Properties properties,
+              Map<String, Set<String>> idsByPath) throws Exception {
+        final Map<String, Map<EntityKey, RemoteEntity>> remoteMultiMap = new HashMap<>();
+        final Map<String, Map<EntityKey, RemoteEntity>> all = getAll(properties);
+        idsByPath.forEach((path, ids) -> remoteMultiMap.put(path,
+                all.getOrDefault(path, Collections.emptyMap()).entrySet().stream()
+                        .filter(entry -> ids.contains(entry.getKey().getId()))
+                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))));
+        return remoteMultiMap;
+    }
+
 }
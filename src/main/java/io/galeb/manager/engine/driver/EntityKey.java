@@ -0,0 +1,82 @@
+/*
+ *   Galeb - Load Balance as a Service Plataform
+ *
+ *   Copyright (C) 2014-2015 Globo.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.galeb.manager.engine.driver;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Identifies an entity of a farm: its entity type (the farm API collection),
+ * its id and the id of its parent ("" if it has no parent).
+ * Entity types are interned, so the few distinct type strings are shared by all keys.
+ */
+public final class EntityKey {
+
+    private static final ConcurrentMap<String, String> ENTITY_TYPES = new ConcurrentHashMap<>();
+
+    private final String entityType;
+    private final String id;
+    private final String parentId;
+    private final int hash;
+
+    public EntityKey(String entityType, String id, String parentId) {
+        this.entityType = internEntityType(entityType);
+        this.id = id != null ? id : "";
+        this.parentId = parentId != null ? parentId : "";
+        this.hash = Objects.hash(this.entityType, this.id, this.parentId);
+    }
+
+    public static String internEntityType(String entityType) {
+        return entityType != null ? ENTITY_TYPES.computeIfAbsent(entityType, type -> type) : "";
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getParentId() {
+        return parentId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        EntityKey other = (EntityKey) o;
+        return hash == other.hash &&
+               entityType.equals(other.entityType) &&
+               id.equals(other.id) &&
+               parentId.equals(other.parentId);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return entityType + "/" + id + "@" + parentId;
+    }
+}
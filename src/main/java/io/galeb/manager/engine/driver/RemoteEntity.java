@@ -0,0 +1,142 @@
+/*
+ *   Galeb - Load Balance as a Service Plataform
+ *
+ *   Copyright (C) 2014-2015 Globo.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.galeb.manager.engine.driver;
+
+import io.galeb.core.model.Backend;
+
+/**
+ * State of an entity as reported by the farm API: only the fields used by the
+ * diff and by the distributed status map are kept. The entity type is the one of
+ * its key. A pk or version missing from the farm answer is flagged as absent
+ * instead of being mapped to a sentinel value, so it never matches a local one.
+ */
+public final class RemoteEntity {
+
+    private static final byte PK_DEFINED      = 1;
+    private static final byte VERSION_DEFINED = 2;
+
+    private final EntityKey key;
+    private final long pk;
+    private final int version;
+    private final byte defined;
+    private final String etag;
+    private final Backend.Health health;
+
+    public RemoteEntity(EntityKey key, long pk, int version, String etag, Backend.Health health) {
+        this(key, pk, version, (byte) (PK_DEFINED | VERSION_DEFINED), etag, health);
+    }
+
+    private RemoteEntity(EntityKey key, long pk, int version, byte defined, String etag, Backend.Health health) {
+        this.key = key;
+        this.pk = pk;
+        this.version = version;
+        this.defined = defined;
+        this.etag = etag != null ? etag : "";
+        this.health = health != null ? health : Backend.Health.UNKNOWN;
+    }
+
+    /**
+     * Builds a remote entity from the raw fields of the farm answer. A pk or version
+     * that is missing or not a number is flagged as absent.
+     */
+    public static RemoteEntity parse(EntityKey key, String pk, String version, String etag, String health) {
+        byte defined = 0;
+        long pkValue = 0L;
+        int versionValue = 0;
+        try {
+            if (pk != null) {
+                pkValue = Long.parseLong(pk);
+                defined |= PK_DEFINED;
+            }
+        } catch (NumberFormatException ignore) {
+            // pk absent
+        }
+        try {
+            if (version != null) {
+                versionValue = Integer.parseInt(version);
+                defined |= VERSION_DEFINED;
+            }
+        } catch (NumberFormatException ignore) {
+            // version absent
+        }
+        return new RemoteEntity(key, pkValue, versionValue, defined, etag, parseHealth(health));
+    }
+
+    public EntityKey getKey() {
+        return key;
+    }
+
+    public String getId() {
+        return key.getId();
+    }
+
+    public String getParentId() {
+        return key.getParentId();
+    }
+
+    public String getEntityType() {
+        return key.getEntityType();
+    }
+
+    public boolean hasPk() {
+        return (defined & PK_DEFINED) != 0;
+    }
+
+    /**
+     * @return the pk reported by the farm, meaningful only if {@link #hasPk()}
+     */
+    public long getPk() {
+        return pk;
+    }
+
+    public boolean hasVersion() {
+        return (defined & VERSION_DEFINED) != 0;
+    }
+
+    /**
+     * @return the version reported by the farm, meaningful only if {@link #hasVersion()}
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public Backend.Health getHealth() {
+        return health;
+    }
+
+    public static Backend.Health parseHealth(String health) {
+        if (health != null) {
+            for (Backend.Health value : Backend.Health.values()) {
+                if (value.toString().equals(health)) {
+                    return value;
+                }
+            }
+        }
+        return Backend.Health.UNKNOWN;
+    }
+
+    @Override
+    public String toString() {
+        return key + " (pk: " + (hasPk() ? pk : "undef") + ", version: " + (hasVersion() ? version : "undef") + ")";
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *   Galeb - Load Balance as a Service Plataform
+ *
+ *   Copyright (C) 2014-2015 Globo.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package io.galeb.manager.engine.driver.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Token bucket in front of the writes sent to one farm API: at most "rate"
+ * operations per second (with a small burst) and "concurrency" requests in
+ * flight. Both limits follow AIMD: they are halved when a write fails or is
+ * slower than io.galeb.throttle.slow, at most once per cooldown, and grow back
+ * by a constant step (io.galeb.throttle.step ops/s per good write) while the API
+ * answers well, so a large re-sync backs off instead of timing out and cascading
+ * into more re-syncs. The throttle never parks the caller: a write that isn't
+ * granted is handed the delay after which it should be tried again.
+ */
+class ApiThrottle {
+
+    private static final Log LOGGER = LogFactory.getLog(ApiThrottle.class);
+
+    static final double MAX_RATE = Double.parseDouble(System.getProperty("io.galeb.throttle.rate", "200"));
+    static final double MIN_RATE = Double.parseDouble(System.getProperty("io.galeb.throttle.minRate", "5"));
+    static final double BURST = Double.parseDouble(System.getProperty("io.galeb.throttle.burst", "20"));
+    static final int MAX_CONCURRENCY = Integer.parseInt(System.getProperty("io.galeb.write.maxPerApi", "8"));
+    static final long SLOW = Long.parseLong(System.getProperty("io.galeb.throttle.slow", "1000"));
+    static final long COOLDOWN = Long.parseLong(System.getProperty("io.galeb.throttle.cooldown", "1000"));
+    static final double STEP = Double.parseDouble(System.getProperty("io.galeb.throttle.step", "0.5"));
+
+    private static final ConcurrentMap<String, ApiThrottle> THROTTLES = new ConcurrentHashMap<>();
+
+    private final String api;
+
+    private double rate = MAX_RATE;
+    private double tokens = BURST;
+    private long lastRefill = currentTimeMillis();
+    private int concurrency = MAX_CONCURRENCY;
+    private double concurrencyGain = 0.0;
+    private int inFlight = 0;
+    private long lastDecrease = 0L;
+
+    ApiThrottle(String api) {
+        this.api = api;
+    }
+
+    static ApiThrottle of(String api) {
+        return THROTTLES.computeIfAbsent(api, ApiThrottle::new);
+    }
+
+    /**
+     * Takes a token and a concurrency slot if both are available.
+     * @return 0 if granted, otherwise the delay (ms) before trying again
+     */
+    synchronized long tryAcquire() {
+        refill();
+        if (inFlight < concurrency && tokens >= 1.0) {
+            tokens -= 1.0;
+            inFlight++;
+            return 0L;
+        }
+        return delay();
+    }
+
+    /**
+     * @return the time (ms) until the next token, or one token period if only a
+     * concurrency slot is missing
+     */
+    synchronized long delay() {
+        refill();
+        final double missing = Math.max(1.0 - tokens, inFlight < concurrency ? 0.0 : 1.0);
+        return missing <= 0.0 ? 0L : Math.max(1L, (long) Math.ceil(missing * 1000.0 / rate));
+    }
+
+    synchronized void release(long latency, boolean success) {
+        inFlight--;
+        final long now = currentTimeMillis();
+        if (!success || latency > SLOW) {
+            if (now - lastDecrease >= COOLDOWN) {
+                lastDecrease = now;
+                rate = Math.max(MIN_RATE, rate / 2.0);
+                concurrency = Math.max(1, concurrency / 2);
+                concurrencyGain = 0.0;
+                LOGGER.warn("Tightening throttle of " + api + " to " + rate() + " ops/s, " + concurrency
+                        + " concurrent (" + (success ? "latency " + latency + " ms" : "failure") + ")");
+            }
+        } else {
+            rate = Math.min(MAX_RATE, rate + STEP);
+            if (concurrency < MAX_CONCURRENCY) {
+                concurrencyGain += 1.0 / concurrency;
+                if (concurrencyGain >= 1.0) {
+                    concurrency++;
+                    concurrencyGain = 0.0;
+                }
+            }
+        }
+    }
+
+    synchronized long rate() {
+        return Math.round(rate);
+    }
+
+    synchronized int concurrency() {
+        return concurrency;
+    }
+
+    private void refill() {
+        final long now = currentTimeMillis();
+        tokens = Math.min(BURST, tokens + (now - lastRefill) * rate / 1000.0);
+        lastRefill = now;
+    }
+}
@@ -18,15 +18,25 @@
 
 package io.galeb.manager.engine.driver.impl;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.galeb.core.model.Backend;
 import io.galeb.core.util.Constants;
 import io.galeb.manager.common.Properties;
+import io.galeb.manager.engine.driver.DiffEntry;
 import io.galeb.manager.engine.driver.Driver;
+import io.galeb.manager.engine.driver.EntityKey;
+import io.galeb.manager.engine.driver.RemoteEntity;
+import io.galeb.manager.engine.service.LockerManager;
 import io.galeb.manager.engine.util.DiffProcessor;
+import io.galeb.manager.engine.util.FixTracker;
+import io.galeb.manager.engine.util.RetryQueue;
+import io.galeb.manager.engine.util.RetryQueue.Outcome;
+import io.galeb.manager.engine.util.SyncExecutors;
 import io.galeb.manager.httpclient.CommonHttpRequester;
-import io.galeb.manager.httpclient.FarmClient;
+import io.galeb.manager.httpclient.CommonHttpRequester.Conditional;
+import io.galeb.manager.httpclient.FarmClientRegistry;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -35,16 +45,35 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.HttpClientErrorException;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static io.galeb.manager.engine.listeners.AbstractEngine.*;
-import static io.galeb.manager.engine.util.CounterDownLatch.decrementDiffCounter;
+import static java.lang.System.currentTimeMillis;
 
 public class GalebV32Driver implements Driver {
 
@@ -52,9 +81,28 @@ public class GalebV32Driver implements Driver {
 
     private static final Log LOGGER = LogFactory.getLog(GalebV32Driver.class);
 
+    private static final int MAX_FETCHES_PER_API = SyncExecutors.threadsFromProperty("io.galeb.fetch.maxPerApi", 4);
+    private static final int FETCH_THREADS = SyncExecutors.threadsFromProperty("io.galeb.fetch.threads", 16);
+    private static final ExecutorService FETCH_EXECUTOR = SyncExecutors.newFixedDaemonPool("galeb-v32-fetch-", FETCH_THREADS);
+    private static final ConcurrentMap<String, Semaphore> FETCHES_IN_FLIGHT = new ConcurrentHashMap<>();
+    private static final int MAX_REMOTE_COLLECTIONS = Integer.parseInt(System.getProperty("io.galeb.fetch.maxCachedCollections", "1024"));
+    private static final ConcurrentMap<String, RemoteCollection> REMOTE_COLLECTIONS = new ConcurrentHashMap<>();
+
+    private static final int WRITE_THREADS = SyncExecutors.threadsFromProperty("io.galeb.write.threads", 32);
+    private static final ExecutorService WRITE_EXECUTOR = SyncExecutors.newFixedDaemonPool("galeb-v32-write-", WRITE_THREADS);
+
     private final ObjectMapper mapper = new ObjectMapper();
 
-    private Object resource = null;
+    private final CommonHttpRequester resource;
+    private final RemoteStateCache remoteState = new RemoteStateCache();
+
+    public GalebV32Driver() {
+        this(null);
+    }
+
+    private GalebV32Driver(CommonHttpRequester resource) {
+        this.resource = resource;
+    }
 
     @Override
     public String toString() {
@@ -63,8 +111,7 @@ public class GalebV32Driver implements Driver {
 
     @Override
     public Driver addResource(Object resource) {
-        this.resource = resource;
-        return this;
+        return new GalebV32Driver(resource instanceof CommonHttpRequester ? (CommonHttpRequester) resource : null);
     }
 
     @Override
@@ -74,12 +121,17 @@ public class GalebV32Driver implements Driver {
         String path = pathWithId(extractPathFromProperties(properties), json);
         String uriPath = fullUriPath(api, path);
 
+        final Boolean cached = remoteState.exist(api, extractKeyFromProperties(properties));
+        if (cached != null) {
+            return cached;
+        }
+
         boolean result = false;
         try {
             final JsonNode jsonNode = mapper.readTree(json);
             final JsonNode parentIdObj = jsonNode.get("parentId");
             final String parentId = parentIdObj != null ? parentIdObj.asText() : "";
-            final CommonHttpRequester httpClient = getHttpClient();
+            final CommonHttpRequester httpClient = getHttpClient(api);
             final ResponseEntity<String> response = httpClient.get(uriPath);
             result = httpClient.isStatusCodeEqualOrLessThan(response, HttpStatus.OK.value());
             result = result && !httpClient.bodyIsEmptyOrEmptyArray(response);
@@ -95,88 +147,432 @@ public class GalebV32Driver implements Driver {
 
     @Override
     public boolean create(Properties properties) {
+        return write(properties, false, this::post) == WriteResult.DONE;
+    }
+
+    private Outcome post(Properties properties) {
         String api = extractApiFromProperties(properties);
         String json = extractBodyFromProperties(properties);
         String path = extractPathFromProperties(properties);
         String uriPath = fullUriPath(api, path);
 
-        boolean result = false;
         try {
-            final CommonHttpRequester httpClient = getHttpClient();
-            final ResponseEntity<String> response = httpClient.post(uriPath, json);
-            result = httpClient.isStatusCodeEqualOrLessThan(response, HttpStatus.ACCEPTED.value());
-        } catch (RuntimeException|URISyntaxException e) {
+            final ResponseEntity<String> response = getHttpClient(api).post(uriPath, json);
+            return outcomeOf(response.getStatusCode().value());
+        } catch (HttpClientErrorException e) {
             LOGGER.error(ExceptionUtils.getStackTrace(e));
-        } finally {
-            decrementDiffCounter(api);
+            return outcomeOf(e.getStatusCode().value());
+        } catch (URISyntaxException e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            return Outcome.GAVE_UP;
+        } catch (RuntimeException e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            return Outcome.FAILED;
         }
-        return result;
     }
 
     @Override
     public boolean update(Properties properties) {
+        return write(properties, false, this::put) == WriteResult.DONE;
+    }
+
+    private Outcome put(Properties properties) {
         String api = extractApiFromProperties(properties);
         String json = extractBodyFromProperties(properties);
         String path = pathWithId(extractPathFromProperties(properties),json);
         String uriPath = fullUriPath(api, path);
 
-        boolean result = false;
         try {
-            final CommonHttpRequester httpClient = getHttpClient();
-            final ResponseEntity<String> response = httpClient.put(uriPath, json);
-            result = httpClient.isStatusCodeEqualOrLessThan(response, HttpStatus.ACCEPTED.value());
-        } catch (RuntimeException|URISyntaxException e) {
+            final ResponseEntity<String> response = getHttpClient(api).put(uriPath, json);
+            return outcomeOf(response.getStatusCode().value());
+        } catch (HttpClientErrorException e) {
             LOGGER.error(ExceptionUtils.getStackTrace(e));
-        } finally {
-            decrementDiffCounter(api);
+            return outcomeOf(e.getStatusCode().value());
+        } catch (URISyntaxException e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            return Outcome.GAVE_UP;
+        } catch (RuntimeException e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            return Outcome.FAILED;
         }
-        return result;
     }
 
     @Override
     public boolean remove(Properties properties) {
+        return write(properties, true, this::delete) == WriteResult.DONE;
+    }
+
+    private Outcome delete(Properties properties) {
         String api = extractApiFromProperties(properties);
         String json = extractBodyFromProperties(properties);
         String path = pathWithId(extractPathFromProperties(properties), json);
         String uriPath = fullUriPath(api, path);
 
-        boolean result = false;
         try {
-            final CommonHttpRequester httpClient = getHttpClient();
             final String body = path.endsWith("/") ? "{\"id\":\"\",\"version\":0}" : json;
-            final ResponseEntity<String> response = httpClient.delete(uriPath, body);
-            result = httpClient.isStatusCodeEqualOrLessThan(response, HttpStatus.ACCEPTED.value());
+            final ResponseEntity<String> response = getHttpClient(api).delete(uriPath, body);
+            return outcomeOf(response.getStatusCode().value());
+        } catch (HttpClientErrorException e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            return outcomeOf(e.getStatusCode().value());
+        } catch (URISyntaxException e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            return Outcome.GAVE_UP;
         } catch (Exception e) {
             LOGGER.error(ExceptionUtils.getStackTrace(e));
+            return Outcome.FAILED;
+        }
+    }
+
+    /**
+     * Runs a farm write and, when it fails with a transient error or is held back
+     * by its {@link ApiThrottle}, hands it to the {@link RetryQueue} of its farm. The pending fix is only released once
+     * the write succeeded, failed for good or its retries were settled.
+     */
+    private WriteResult write(final Properties properties, boolean removed, final Function<Properties, Outcome> operation) {
+        final String api = extractApiFromProperties(properties);
+        Outcome outcome = Outcome.FAILED;
+        boolean queued = false;
+        try {
+            outcome = throttled(api, properties, operation);
         } finally {
-            decrementDiffCounter(api);
+            queued = settle(properties, removed, operation, outcome);
         }
-        return result;
+        return outcome == Outcome.SUCCEEDED ? WriteResult.DONE : queued ? WriteResult.QUEUED : WriteResult.FAILED;
+    }
+
+    /**
+     * A write that is done, or that can't succeed (a 4xx other than 409/429),
+     * also cancels the queued retry of the same entity: replaying that older
+     * operation would undo this one.
+     *
+     * @return true if the write was queued for retry
+     */
+    private boolean settle(final Properties properties, boolean removed, final Function<Properties, Outcome> operation,
+                        final Outcome outcome) {
+        final String api = extractApiFromProperties(properties);
+        if (outcome != Outcome.DEFERRED) {
+            recordWrite(api, properties, removed, outcome == Outcome.SUCCEEDED);
+        }
+        if (outcome == Outcome.FAILED || outcome == Outcome.DEFERRED) {
+            return retry(properties, removed, operation, outcome == Outcome.DEFERRED);
+        }
+        if (outcome == Outcome.GAVE_UP) {
+            LOGGER.warn("Not retrying " + retryKeyOf(api, properties) + ": refused by the farm API or fenced off");
+        }
+        RetryQueue.cancel(properties.getOrDefault(FARMID_PROP, -1L), retryKeyOf(api, properties));
+        fixDone(properties, api);
+        return false;
+    }
+
+    private boolean retry(final Properties properties, boolean removed, final Function<Properties, Outcome> operation,
+                          boolean deferred) {
+        final String api = extractApiFromProperties(properties);
+        final long farmId = properties.getOrDefault(FARMID_PROP, -1L);
+        final String key = retryKeyOf(api, properties);
+        final ApiThrottle throttle = ApiThrottle.of(api);
+        final RetryQueue.Attempt attempt = () -> {
+            final Outcome outcome = throttled(api, properties, operation);
+            if (outcome != Outcome.DEFERRED) {
+                recordWrite(api, properties, removed, outcome == Outcome.SUCCEEDED);
+            }
+            return outcome;
+        };
+        if (deferred) {
+            return RetryQueue.defer(farmId, key, attempt, () -> fixDone(properties, api), throttle::delay);
+        }
+        return RetryQueue.submit(farmId, key, attempt, () -> fixDone(properties, api), throttle::delay);
+    }
+
+    private String retryKeyOf(String api, final Properties properties) {
+        return api + " " + extractKeyFromProperties(properties);
+    }
+
+    private Outcome throttled(String api, final Properties properties, final Function<Properties, Outcome> operation) {
+        if (fencedOff(properties)) {
+            return Outcome.GAVE_UP;
+        }
+        final ApiThrottle throttle = ApiThrottle.of(api);
+        if (throttle.tryAcquire() > 0L) {
+            return Outcome.DEFERRED;
+        }
+        final long start = currentTimeMillis();
+        Outcome outcome = Outcome.FAILED;
+        try {
+            outcome = operation.apply(properties);
+        } finally {
+            throttle.release(currentTimeMillis() - start, outcome != Outcome.FAILED);
+        }
+        return outcome;
+    }
+
+    /**
+     * A write sent by a farm sync carries the fencing token of its lease. Once
+     * the lease expired or was taken over, the write is stale and is dropped.
+     */
+    private boolean fencedOff(final Properties properties) {
+        if (!properties.containKey(LEASE_PROP)) {
+            return false;
+        }
+        final String lease = String.valueOf(properties.getOrDefault(LEASE_PROP, ""));
+        final long token = properties.getOrDefault(LEASE_TOKEN_PROP, -1L);
+        if (LockerManager.isCurrent(lease, token)) {
+            return false;
+        }
+        LOGGER.warn("Lease " + lease + " (token " + token + ") is gone. Dropping " + retryKeyOf(extractApiFromProperties(properties), properties));
+        return true;
+    }
+
+    /**
+     * Up to 202 is done. Other 4xx answers won't change on retry, except 409
+     * (conflict) and 429 (too many requests).
+     */
+    private Outcome outcomeOf(int status) {
+        if (status <= HttpStatus.ACCEPTED.value()) {
+            return Outcome.SUCCEEDED;
+        }
+        final boolean clientError = status >= HttpStatus.BAD_REQUEST.value() && status < HttpStatus.INTERNAL_SERVER_ERROR.value();
+        return clientError && status != HttpStatus.CONFLICT.value() && status != HttpStatus.TOO_MANY_REQUESTS.value() ?
+                Outcome.GAVE_UP : Outcome.FAILED;
     }
 
     @Override
-    public Map<String, Map<String, Object>> diff(Properties properties,
-                Map<String,Map<String,Map<String,String>>> getAll) throws Exception {
+    public CompletableFuture<Boolean> existAsync(Properties properties) {
+        final String api = extractApiFromProperties(properties);
+        final String json = extractBodyFromProperties(properties);
+        final String uriPath = fullUriPath(api, pathWithId(extractPathFromProperties(properties), json));
+        final Boolean cached = remoteState.exist(api, extractKeyFromProperties(properties));
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        final String parentId;
+        try {
+            final JsonNode parentIdObj = mapper.readTree(json).get("parentId");
+            parentId = parentIdObj != null ? parentIdObj.asText() : "";
+        } catch (IOException e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            return CompletableFuture.completedFuture(false);
+        }
+        final CommonHttpRequester httpClient = getHttpClient(api);
+        return httpClient.getAsync(uriPath).handle((response, error) -> {
+            if (error != null) {
+                LOGGER.info(error.getMessage());
+                return false;
+            }
+            return httpClient.isStatusCodeEqualOrLessThan(response, HttpStatus.OK.value()) &&
+                   !httpClient.bodyIsEmptyOrEmptyArray(response) &&
+                   hasExpectedParent(response.getBody(), parentId);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> createAsync(Properties properties) {
+        final String api = extractApiFromProperties(properties);
+        final String json = extractBodyFromProperties(properties);
+        final String uriPath = fullUriPath(api, extractPathFromProperties(properties));
+        final CommonHttpRequester httpClient = getHttpClient(api);
+        return withDiffCounter(api, () -> httpClient.postAsync(uriPath, json), properties, false, this::post);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateAsync(Properties properties) {
+        final String api = extractApiFromProperties(properties);
+        final String json = extractBodyFromProperties(properties);
+        final String uriPath = fullUriPath(api, pathWithId(extractPathFromProperties(properties), json));
+        final CommonHttpRequester httpClient = getHttpClient(api);
+        return withDiffCounter(api, () -> httpClient.putAsync(uriPath, json), properties, false, this::put);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> removeAsync(Properties properties) {
+        final String api = extractApiFromProperties(properties);
+        final String json = extractBodyFromProperties(properties);
+        final String path = pathWithId(extractPathFromProperties(properties), json);
+        final String body = path.endsWith("/") ? "{\"id\":\"\",\"version\":0}" : json;
+        final CommonHttpRequester httpClient = getHttpClient(api);
+        return withDiffCounter(api, () -> httpClient.deleteAsync(fullUriPath(api, path), body), properties, true, this::delete);
+    }
+
+    private CompletableFuture<Boolean> withDiffCounter(String api,
+                                                       final Supplier<CompletableFuture<ResponseEntity<String>>> request,
+                                                       final Properties properties,
+                                                       boolean removed,
+                                                       final Function<Properties, Outcome> retryOperation) {
+        if (fencedOff(properties)) {
+            settle(properties, removed, retryOperation, Outcome.GAVE_UP);
+            return CompletableFuture.completedFuture(false);
+        }
+        final ApiThrottle throttle = ApiThrottle.of(api);
+        if (throttle.tryAcquire() > 0L) {
+            settle(properties, removed, retryOperation, Outcome.DEFERRED);
+            return CompletableFuture.completedFuture(false);
+        }
+        final long start = currentTimeMillis();
+        CompletableFuture<ResponseEntity<String>> sent;
+        try {
+            sent = request.get();
+        } catch (RuntimeException e) {
+            sent = new CompletableFuture<>();
+            sent.completeExceptionally(e);
+        }
+        return sent.handle((response, error) -> {
+            Outcome outcome = Outcome.FAILED;
+            try {
+                if (error != null) {
+                    LOGGER.error(ExceptionUtils.getStackTrace(error));
+                } else {
+                    outcome = outcomeOf(response.getStatusCode().value());
+                }
+                return outcome == Outcome.SUCCEEDED;
+            } finally {
+                throttle.release(currentTimeMillis() - start, outcome != Outcome.FAILED);
+                settle(properties, removed, retryOperation, outcome);
+            }
+        });
+    }
+
+    private void recordWrite(String api, final Properties properties, boolean removed, boolean success) {
+        final EntityKey key = extractKeyFromProperties(properties);
+        if (key == null || "".equals(key.getId())) {
+            remoteState.invalidate(api);
+        } else {
+            remoteState.written(api, key, removed, success);
+        }
+    }
+
+    private EntityKey extractKeyFromProperties(final Properties properties) {
+        try {
+            final JsonNode json = mapper.readTree(extractBodyFromProperties(properties));
+            final JsonNode idObj = json.get("id");
+            final JsonNode parentIdObj = json.get("parentId");
+            return new EntityKey(extractPathFromProperties(properties),
+                                 idObj != null ? idObj.asText() : "",
+                                 parentIdObj != null ? parentIdObj.asText() : "");
+        } catch (IOException e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            return null;
+        }
+    }
+
+    @Override
+    public void forget(String api) {
+        final String prefix = fullUriPath(api, "");
+        REMOTE_COLLECTIONS.keySet().removeIf(uriPath -> uriPath.startsWith(prefix));
+        remoteState.invalidate(api);
+    }
+
+    @Override
+    public List<WriteResult> createAll(List<Properties> propertiesList) {
+        return runAll(propertiesList, properties -> write(properties, false, this::post));
+    }
+
+    @Override
+    public List<WriteResult> updateAll(List<Properties> propertiesList) {
+        return runAll(propertiesList, properties -> write(properties, false, this::put));
+    }
+
+    @Override
+    public List<WriteResult> removeAll(List<Properties> propertiesList) {
+        return runAll(propertiesList, properties -> write(properties, true, this::delete));
+    }
+
+    /**
+     * Runs the writes on the write pool and returns one result per item, in the
+     * same order as propertiesList. Rate and requests in flight per API are
+     * bounded by each single call through its {@link ApiThrottle}, and each
+     * call still decrements its own diff counter. A write handed to the
+     * {@link RetryQueue} is QUEUED: it is settled later, not failed.
+     */
+    private List<WriteResult> runAll(List<Properties> propertiesList, Function<Properties, WriteResult> operation) {
+        final List<Future<WriteResult>> results = new ArrayList<>(propertiesList.size());
+        propertiesList.forEach(properties -> results.add(WRITE_EXECUTOR.submit(() -> operation.apply(properties))));
+        return results.stream().map(result -> {
+            try {
+                return result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return WriteResult.FAILED;
+            } catch (ExecutionException e) {
+                LOGGER.error(ExceptionUtils.getStackTrace(e.getCause()));
+                return WriteResult.FAILED;
+            }
+        }).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<DiffEntry> diff(Properties properties,
+                Map<String, Map<EntityKey, RemoteEntity>> getAll) throws Exception {
         return new DiffProcessor().setProperties(properties).getDiffMap(getAll);
     }
 
     @Override
-    public Map<String,Map<String,Map<String,String>>> getAll(Properties properties) throws Exception {
-        final Map<String,Map<String,Map<String,String>>> remoteMultiMap = new HashMap<>();
-        final AtomicReference<Exception> exception = new AtomicReference<>(null);
+    public Map<String, Map<EntityKey, RemoteEntity>> getAll(Properties properties) throws Exception {
         final String api = extractApiFromProperties(properties);
+        final Map<String, List<String>> uriPathsByPath = new HashMap<>();
         Constants.ENTITY_CLASSES.stream().map(clazz -> clazz.getSimpleName().toLowerCase())
-                .forEach(path -> {
-                    try {
-                        if (exception.get() == null) {
-                            remoteMultiMap.put(path, extractRemoteMap(path, api));
-                        }
-                    } catch (Exception e) {
-                        exception.set(e);
+                .forEach(path -> uriPathsByPath.put(path, Collections.singletonList(fullUriPath(api, path))));
+        final Map<String, Map<EntityKey, RemoteEntity>> remoteMultiMap = fetchConcurrently(api, uriPathsByPath, true);
+        remoteState.refresh(api, remoteMultiMap);
+        return remoteMultiMap;
+    }
+
+    @Override
+    public Map<String, Map<EntityKey, RemoteEntity>> getByIds(Properties properties,
+                                                              Map<String, Set<String>> idsByPath) throws Exception {
+        final String api = extractApiFromProperties(properties);
+        final Map<String, List<String>> uriPathsByPath = new HashMap<>();
+        idsByPath.forEach((path, ids) -> uriPathsByPath.put(path, ids.stream()
+                .map(id -> fullUriPath(api, path + "/" + urlEncode(id)))
+                .collect(Collectors.toList())));
+        final Map<String, Map<EntityKey, RemoteEntity>> remoteMultiMap = fetchConcurrently(api, uriPathsByPath, false);
+        remoteMultiMap.forEach((path, remoteMap) ->
+                remoteMap.keySet().removeIf(key -> !idsByPath.getOrDefault(path, Collections.emptySet()).contains(key.getId())));
+        return remoteMultiMap;
+    }
+
+    /**
+     * Fetches every uriPath on the shared fetch pool. The per-API permit is taken
+     * before a fetch is handed to the pool, so a slow API parks its own caller
+     * instead of pool threads, and it is given back when the fetch is done or
+     * cancelled.
+     */
+    private Map<String, Map<EntityKey, RemoteEntity>> fetchConcurrently(String api,
+                                                                        final Map<String, List<String>> uriPathsByPath,
+                                                                        boolean conditional)
+            throws Exception {
+        final Map<String, Map<EntityKey, RemoteEntity>> remoteMultiMap = new HashMap<>();
+        final Semaphore inFlight = FETCHES_IN_FLIGHT.computeIfAbsent(api, k -> new Semaphore(MAX_FETCHES_PER_API));
+        final BlockingQueue<Fetch> completed = new LinkedBlockingQueue<>();
+        final List<Fetch> fetches = new ArrayList<>();
+
+        try {
+            int received = 0;
+            for (Map.Entry<String, List<String>> uriPathsOfPath : uriPathsByPath.entrySet()) {
+                final String path = uriPathsOfPath.getKey();
+                remoteMultiMap.put(path, new HashMap<>());
+                for (String uriPath : uriPathsOfPath.getValue()) {
+                    inFlight.acquire();
+                    final Fetch fetch = new Fetch(path, () -> conditional ?
+                            extractRemoteCollection(path, api, uriPath) : extractRemoteMap(path, api, uriPath),
+                            inFlight, completed);
+                    fetches.add(fetch);
+                    FETCH_EXECUTOR.execute(fetch);
+                    Fetch done;
+                    while ((done = completed.poll()) != null) {
+                        remoteMultiMap.get(done.path).putAll(done.get());
+                        received++;
                     }
-                });
-        if (exception.get() != null) {
-            throw exception.get();
+                }
+            }
+            for (; received < fetches.size(); received++) {
+                final Fetch done = completed.take();
+                remoteMultiMap.get(done.path).putAll(done.get());
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        } finally {
+            fetches.forEach(fetch -> fetch.cancel(true));
         }
         return remoteMultiMap;
     }
@@ -202,6 +598,13 @@ public class GalebV32Driver implements Driver {
         return properties.getOrDefault(API_PROP, "NULL").toString();
     }
 
+    private void fixDone(final Properties properties, String api) {
+        final long farmId = properties.getOrDefault(FARMID_PROP, -1L);
+        if (farmId >= 0) {
+            FixTracker.fixed(farmId, api);
+        }
+    }
+
     private boolean hasExpectedParent(String body, String expectedParent) {
         if (expectedParent == null || "".equals(expectedParent)) {
             return true;
@@ -235,68 +638,166 @@ public class GalebV32Driver implements Driver {
             if (idObj == null) {
                 return "";
             }
-            id = idObj.asText();
-            if (id != null) {
-                id = URLEncoder.encode(id, StandardCharsets.UTF_8.toString());
-            } else {
-                id = "";
-            }
+            id = urlEncode(idObj.asText());
         } catch (IOException e) {
             LOGGER.error(ExceptionUtils.getStackTrace(e));
         }
         return id;
     }
 
-    private Map<String, Map<String, String>> extractRemoteMap(String path, String api) throws Exception {
-        final Map<String, Map<String, String>> remoteMap = new HashMap<>();
-        String fullPath = fullUriPath(api, path);
-
-        JsonNode json = getJson(fullPath);
-        if (json != null && json.isArray()) {
-            json.forEach(element -> {
-                Map<String, String> entityProperties = new HashMap<>();
-                String id = element.get("id").asText();
-                JsonNode parentIdObj = element.get("parentId");
-                String parentId = parentIdObj != null ? parentIdObj.asText() : "";
-                String pk = element.get("pk").asText();
-                String version = element.get("version").asText();
-                String entityType = element.get("_entity_type").asText();
-                String etag = element.get("_etag").asText();
-                JsonNode healthObj = element.get("health");
-                String health = healthObj != null ? healthObj.asText() : Backend.Health.UNKNOWN.toString();
-
-                entityProperties.put("id", id);
-                entityProperties.put("pk", pk);
-                entityProperties.put("version", version);
-                entityProperties.put("parentId", parentId);
-                entityProperties.put("_entity_type", entityType);
-                entityProperties.put("_etag", etag);
-                entityProperties.put("health", health);
-                remoteMap.put(fullPath + "/" + id + "@" + parentId, entityProperties);
-            });
+    private String urlEncode(String id) {
+        if (id == null) {
+            return "";
+        }
+        try {
+            return URLEncoder.encode(id, StandardCharsets.UTF_8.toString());
+        } catch (UnsupportedEncodingException e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            return id;
         }
+    }
 
-        return remoteMap;
+    private Map<EntityKey, RemoteEntity> extractRemoteMap(String path, String api, String uriPath) throws Exception {
+        Map<EntityKey, RemoteEntity> remoteMap = null;
+        try {
+            remoteMap = getHttpClient(api).getAndExtract(uriPath, body -> readRemoteEntities(path, body));
+        } catch (HttpClientErrorException e) {
+            LOGGER.info(e.getMessage());
+        }
+        return remoteMap != null ? remoteMap : new HashMap<>();
     }
 
-    private JsonNode getJson(String fullPath) throws URISyntaxException, IOException {
-        final CommonHttpRequester httpClient = getHttpClient();
-        JsonNode json = null;
+    /**
+     * Collections are fetched with If-None-Match when the farm API sent an ETag
+     * for them; a 304 reuses the entities read last time. At most
+     * io.galeb.fetch.maxCachedCollections collections are kept, across APIs; the
+     * others are fetched in full every time.
+     */
+    private Map<EntityKey, RemoteEntity> extractRemoteCollection(String path, String api, String uriPath) throws Exception {
+        final RemoteCollection cached = REMOTE_COLLECTIONS.get(uriPath);
         try {
-            ResponseEntity<String> response = httpClient.get(fullPath);
-            boolean result = httpClient.isStatusCodeEqualOrLessThan(response, 200);
-            if (result) {
-                json = mapper.readTree(response.getBody());
+            final Conditional<Map<EntityKey, RemoteEntity>> fetched = getHttpClient(api)
+                    .getAndExtractIfNoneMatch(uriPath, cached != null ? cached.etag : null, body -> readRemoteEntities(path, body));
+            if (fetched.isNotModified() && cached != null) {
+                return cached.remoteMap;
             }
+            final Map<EntityKey, RemoteEntity> remoteMap = fetched.getBody() != null ? fetched.getBody() : new HashMap<>();
+            if (fetched.getEtag() != null && (REMOTE_COLLECTIONS.size() < MAX_REMOTE_COLLECTIONS || cached != null)) {
+                REMOTE_COLLECTIONS.put(uriPath, new RemoteCollection(fetched.getEtag(), remoteMap));
+            } else {
+                REMOTE_COLLECTIONS.remove(uriPath);
+            }
+            return remoteMap;
         } catch (HttpClientErrorException e) {
             LOGGER.info(e.getMessage());
-            json = null;
+            REMOTE_COLLECTIONS.remove(uriPath);
+            return new HashMap<>();
         }
-        return json;
     }
 
-    private CommonHttpRequester getHttpClient() {
-        return (resource instanceof CommonHttpRequester) ? (CommonHttpRequester)resource : new FarmClient();
+    private Map<EntityKey, RemoteEntity> readRemoteEntities(String path, InputStream body) throws IOException {
+        final Map<EntityKey, RemoteEntity> remoteMap = new HashMap<>();
+        try (JsonParser parser = mapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return remoteMap;
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                final RemoteEntity remoteEntity = readRemoteEntity(path, parser);
+                if (remoteEntity != null) {
+                    remoteMap.put(remoteEntity.getKey(), remoteEntity);
+                }
+            }
+        }
+        return remoteMap;
     }
 
+    private RemoteEntity readRemoteEntity(String path, JsonParser parser) throws IOException {
+        String id = null;
+        String parentId = "";
+        String pk = null;
+        String version = null;
+        String etag = null;
+        String health = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "id":
+                    id = parser.getText();
+                    break;
+                case "parentId":
+                    parentId = parser.getText();
+                    break;
+                case "pk":
+                    pk = parser.getText();
+                    break;
+                case "version":
+                    version = parser.getText();
+                    break;
+                case "_etag":
+                    etag = parser.getText();
+                    break;
+                case "health":
+                    health = parser.getText();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (id == null) {
+            LOGGER.warn("Ignoring " + path + " without id");
+            return null;
+        }
+        final EntityKey key = new EntityKey(path, id, parentId);
+        return RemoteEntity.parse(key, pk, version, etag, health);
+    }
+
+    private CommonHttpRequester getHttpClient(String api) {
+        return resource != null ? resource : FarmClientRegistry.get(api);
+    }
+
+    private static class Fetch extends FutureTask<Map<EntityKey, RemoteEntity>> {
+
+        private final String path;
+        private final Semaphore permits;
+        private final BlockingQueue<Fetch> completed;
+
+        Fetch(String path,
+              final Callable<Map<EntityKey, RemoteEntity>> fetch,
+              final Semaphore permits,
+              final BlockingQueue<Fetch> completed) {
+            super(fetch);
+            this.path = path;
+            this.permits = permits;
+            this.completed = completed;
+        }
+
+        @Override
+        protected void done() {
+            permits.release();
+            completed.add(this);
+        }
+    }
+
+    private static class RemoteCollection {
+
+        private final String etag;
+        private final Map<EntityKey, RemoteEntity> remoteMap;
+
+        RemoteCollection(String etag, final Map<EntityKey, RemoteEntity> remoteMap) {
+            this.etag = etag;
+            this.remoteMap = Collections.unmodifiableMap(remoteMap);
+        }
+    }
 }
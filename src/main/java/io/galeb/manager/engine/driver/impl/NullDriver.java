@@ -18,8 +18,12 @@
 
 package io.galeb.manager.engine.driver.impl;
 
+import io.galeb.manager.common.Properties;
 import io.galeb.manager.engine.driver.*;
 
+import java.util.Collections;
+import java.util.List;
+
 public class NullDriver implements Driver {
 
     @Override
@@ -27,4 +31,19 @@ public class NullDriver implements Driver {
         return DEFAULT_DRIVER_NAME;
     }
 
+    @Override
+    public List<WriteResult> createAll(List<Properties> propertiesList) {
+        return Collections.nCopies(propertiesList.size(), WriteResult.DONE);
+    }
+
+    @Override
+    public List<WriteResult> updateAll(List<Properties> propertiesList) {
+        return Collections.nCopies(propertiesList.size(), WriteResult.DONE);
+    }
+
+    @Override
+    public List<WriteResult> removeAll(List<Properties> propertiesList) {
+        return Collections.nCopies(propertiesList.size(), WriteResult.DONE);
+    }
+
 }
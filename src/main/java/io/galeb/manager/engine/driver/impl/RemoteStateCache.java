@@ -0,0 +1,116 @@
+/*
+ *   Galeb - Load Balance as a Service Plataform
+ *
+ *   Copyright (C) 2014-2015 Globo.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.galeb.manager.engine.driver.impl;
+
+import io.galeb.manager.engine.driver.EntityKey;
+import io.galeb.manager.engine.driver.RemoteEntity;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Per-API snapshot of which (type, id, parent) triples exist on the farm,
+ * filled by getAll and kept current by the results of driver writes.
+ * Only hits on a fresh snapshot are answered: other manager nodes write to
+ * the same farm, so a miss may be an entity created elsewhere since the
+ * snapshot and falls back to the network, as do ids touched by a failed
+ * write. The TTL is about one sync tick, which bounds how long a removal
+ * made by another node can be hidden by a stale hit.
+ */
+class RemoteStateCache {
+
+    static final long TTL = Long.parseLong(System.getProperty("io.galeb.remote.cache.ttl", "5000"));
+
+    private final ConcurrentMap<String, ApiState> states = new ConcurrentHashMap<>();
+
+    void refresh(String api, final Map<String, Map<EntityKey, RemoteEntity>> remoteMultiMap) {
+        final ApiState state = new ApiState();
+        remoteMultiMap.values().forEach(remoteMap -> remoteMap.keySet().forEach(state::add));
+        states.put(api, state);
+    }
+
+    /**
+     * @return true if the snapshot has the entity, null if the farm must be asked
+     */
+    Boolean exist(String api, final EntityKey key) {
+        if (key == null || "".equals(key.getId())) {
+            return null;
+        }
+        final ApiState state = states.get(api);
+        if (state == null || !state.isFresh() || state.unknown.contains(idOf(key))) {
+            return null;
+        }
+        final Set<String> parents = state.parentsById.get(idOf(key));
+        final boolean hit = parents != null &&
+                ("".equals(key.getParentId()) ? !parents.isEmpty() : parents.contains(key.getParentId()));
+        return hit ? Boolean.TRUE : null;
+    }
+
+    void written(String api, final EntityKey key, boolean removed, boolean success) {
+        final ApiState state = states.get(api);
+        if (state == null) {
+            return;
+        }
+        if (!success) {
+            state.unknown.add(idOf(key));
+        } else if (removed) {
+            state.remove(key);
+        } else {
+            state.add(key);
+        }
+    }
+
+    void invalidate(String api) {
+        states.remove(api);
+    }
+
+    private static EntityKey idOf(final EntityKey key) {
+        return new EntityKey(key.getEntityType(), key.getId(), "");
+    }
+
+    private static class ApiState {
+
+        private final long refreshedAt = currentTimeMillis();
+        private final ConcurrentMap<EntityKey, Set<String>> parentsById = new ConcurrentHashMap<>();
+        private final Set<EntityKey> unknown = ConcurrentHashMap.newKeySet();
+
+        boolean isFresh() {
+            return currentTimeMillis() - refreshedAt < TTL;
+        }
+
+        void add(final EntityKey key) {
+            parentsById.computeIfAbsent(idOf(key), k -> ConcurrentHashMap.newKeySet()).add(key.getParentId());
+        }
+
+        void remove(final EntityKey key) {
+            if ("".equals(key.getParentId())) {
+                parentsById.remove(idOf(key));
+            } else {
+                parentsById.computeIfPresent(idOf(key), (k, parents) -> {
+                    parents.remove(key.getParentId());
+                    return parents.isEmpty() ? null : parents;
+                });
+            }
+        }
+    }
+}
@@ -18,8 +18,14 @@
 
 package io.galeb.manager.engine.listeners;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import io.galeb.manager.engine.driver.Driver;
 import io.galeb.manager.engine.driver.DriverBuilder;
@@ -31,6 +37,7 @@ import io.galeb.manager.entity.Farm;
 import io.galeb.manager.entity.VirtualHost;
 import io.galeb.manager.entity.WithFarmID;
 import io.galeb.manager.queue.FarmQueue;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.logging.Log;
 import org.springframework.security.core.Authentication;
 
@@ -46,6 +53,9 @@ public abstract class AbstractEngine<T> {
     public static final String PATH_PROP = "path";
     public static final String API_PROP  = "api";
     public static final String PARENTID_PROP  = "parentId";
+    public static final String FARMID_PROP  = "farmId";
+    public static final String LEASE_PROP  = "lease";
+    public static final String LEASE_TOKEN_PROP  = "leaseToken";
 
     private Driver driver = null;
 
@@ -55,9 +65,11 @@ public abstract class AbstractEngine<T> {
     }
 
     public Driver getDriver(AbstractEntity<?> entity) {
-        final Farm farm = findFarm(entity).orElse(null);
-        return entity != null ? DriverBuilder.getDriver(farm) :
-                (driver != null ? driver : DriverBuilder.getDriver(null));
+        if (driver != null) {
+            return driver;
+        }
+        final Farm farm = entity != null ? findFarm(entity).orElse(null) : null;
+        return DriverBuilder.getDriver(farm);
     }
 
     public abstract void create(T entity, final Map<String, String> jmsHeaders);
@@ -91,6 +103,38 @@ public abstract class AbstractEngine<T> {
         return properties;
     }
 
+    /**
+     * The farm writes a sync fix of entity stands for, as this engine's listener
+     * would issue them (the entity under parentId, then its alias copies), so a
+     * level of fixes can be pushed with the driver batch calls. Empty when the
+     * engine has no such writes; the fix then goes through the listener.
+     */
+    public List<Properties> makeFixProperties(T entity, String parentId, final Map<String, String> jmsHeaders) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Headers for the alias copies of a fix: only the write of the entity itself
+     * releases its pending fix.
+     */
+    protected Map<String, String> aliasHeaders(final Map<String, String> jmsHeaders) {
+        final Map<String, String> headers = new HashMap<>(jmsHeaders);
+        headers.remove(FARMID_PROP);
+        return headers;
+    }
+
+    /**
+     * Waits once for all driver calls issued by a listener, so the JMS message
+     * is only acknowledged after its farm requests have finished.
+     */
+    protected void awaitAll(final Collection<? extends CompletableFuture<?>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).join();
+        } catch (CompletionException e) {
+            getLogger().error(ExceptionUtils.getStackTrace(e.getCause() != null ? e.getCause() : e));
+        }
+    }
+
     protected Provisioning getProvisioning(AbstractEntity<?> entity) {
         return new NullProvisioning();
     }
@@ -19,7 +19,9 @@
 package io.galeb.manager.engine.listeners;
 
 import static io.galeb.manager.cache.DistMap.DIST_MAP_FARM_ID_PROP;
-import static io.galeb.manager.engine.driver.Driver.ActionOnDiff.REMOVE;
+import static io.galeb.manager.engine.driver.Driver.ActionOnDiff.CREATE;
+import static io.galeb.manager.engine.driver.Driver.ActionOnDiff.UPDATE;
+import static io.galeb.manager.engine.util.ManagerToFarmConverter.MANAGER_TO_FARM_ENTITY_MAP;
 import static io.galeb.manager.entity.AbstractEntity.EntityStatus.*;
 import static java.lang.System.currentTimeMillis;
 
@@ -30,11 +32,23 @@ import io.galeb.core.model.Entity;
 import io.galeb.core.model.Rule;
 import io.galeb.manager.cache.DistMap;
 import io.galeb.manager.common.StatusDistributed;
+import io.galeb.manager.common.SyncInterval;
+import io.galeb.manager.engine.driver.DiffEntry;
 import io.galeb.manager.engine.driver.Driver;
 import io.galeb.manager.engine.driver.Driver.ActionOnDiff;
+import io.galeb.manager.engine.driver.Driver.WriteResult;
+import io.galeb.manager.engine.driver.EntityKey;
+import io.galeb.manager.engine.driver.RemoteEntity;
 import io.galeb.manager.engine.listeners.services.QueueLocator;
+import io.galeb.manager.engine.service.FarmShards;
 import io.galeb.manager.engine.service.LockerManager;
-import io.galeb.manager.engine.util.CounterDownLatch;
+import io.galeb.manager.engine.service.SyncJournal;
+import io.galeb.manager.engine.util.FixPlanner;
+import io.galeb.manager.engine.util.FixTracker;
+import io.galeb.manager.engine.util.LocalEntity;
+import io.galeb.manager.engine.util.SyncExecutors;
+import io.galeb.manager.engine.util.SyncFingerprint;
+import io.galeb.manager.engine.util.SyncPlan;
 import io.galeb.manager.entity.*;
 import io.galeb.manager.entity.AbstractEntity.EntityStatus;
 import io.galeb.manager.queue.AbstractEnqueuer;
@@ -47,6 +61,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.messaging.handler.annotation.Headers;
 import org.springframework.security.core.Authentication;
@@ -58,9 +73,21 @@ import io.galeb.manager.security.user.CurrentUser;
 import io.galeb.manager.security.services.SystemUserService;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -72,9 +99,27 @@ public class FarmEngine extends AbstractEngine<Farm> {
 
     public static final String ENTITIES_MAP_PROP = "entitiesMap";
     public static final String LOCK_NAME_PROP    = "lockName";
+    public static final String SYNC_HOPS_PROP    = "syncHops";
+    public static final String RELOAD_SINCE_PROP = "reloadSince";
 
     private static final String FARM_STATUS_MSG_PREFIX = "FARM STATUS - ";
     private static final Pageable ALL_PAGES = new PageRequest(0, Integer.MAX_VALUE);
+    private static final int SYNC_API_THREADS = SyncExecutors.threadsFromProperty("io.galeb.sync.api.threads", 8);
+    private static final int SYNC_FIX_THREADS = SyncExecutors.threadsFromProperty("io.galeb.sync.fix.threads", 4);
+    private static final boolean DIRECT_FIX = Boolean.parseBoolean(System.getProperty("io.galeb.sync.fix.direct", "false"));
+    private static final int DIRECT_FIX_THREADS = SyncExecutors.threadsFromProperty("io.galeb.sync.fix.direct.threads", 16);
+    private static final int DIRECT_FIX_QUEUE = Integer.parseInt(System.getProperty("io.galeb.sync.fix.direct.queue", "1000"));
+    private static final long FIX_LEVEL_TIMEOUT = Long.parseLong(System.getProperty("io.galeb.sync.fix.level.timeout", "10000"));
+    private static final long FIX_LEVEL_POLL = Long.parseLong(System.getProperty("io.galeb.sync.fix.level.poll", "1000"));
+    private static final int SYNC_LEVEL_THREADS = SyncExecutors.threadsFromProperty("io.galeb.sync.fix.level.threads", 2);
+    private static final boolean INCREMENTAL_SYNC = Boolean.parseBoolean(System.getProperty("io.galeb.sync.incremental", "false"));
+    private static final long FULL_SYNC_INTERVAL = Long.parseLong(System.getProperty("io.galeb.sync.full.interval", "300000"));
+    private static final boolean STREAMING_RELOAD = Boolean.parseBoolean(System.getProperty("io.galeb.reload.streaming", "true"));
+    private static final long RELOAD_TIMEOUT = Long.parseLong(System.getProperty("io.galeb.reload.timeout", "600000"));
+    private static final long RELOAD_RETRY_DELAY = Long.parseLong(System.getProperty("io.galeb.reload.retryDelay", "5000"));
+    private static final boolean SAMPLED_SYNC = Boolean.parseBoolean(System.getProperty("io.galeb.sync.sampled", "false"));
+    private static final int SAMPLE_SIZE = Integer.parseInt(System.getProperty("io.galeb.sync.sample.size", "500"));
+    private static final int SYNC_MAX_HOPS = Integer.parseInt(System.getProperty("io.galeb.sync.sharding.maxHops", "2"));
 
     private LockerManager lockerManager = null;
 
@@ -86,9 +131,29 @@ public class FarmEngine extends AbstractEngine<Farm> {
     private TargetRepository targetRepository;
     private PoolRepository poolRepository;
     private QueueLocator queueLocator;
+    private SyncJournal syncJournal;
+    private FarmShards farmShards;
+    private SyncInterval syncInterval;
+
+    /**
+     * How a diff is applied: only reported (sample check), fixed entity by entity
+     * through the engines, or pushed level by level in driver batches (reload).
+     */
+    private enum FixMode { VERIFY_ONLY, FIX, FIX_IN_BULK }
 
     private AtomicBoolean isReady = new AtomicBoolean(false);
 
+    private final ExecutorService apiExecutor = SyncExecutors.newFixedDaemonPool("farm-sync-api-", SYNC_API_THREADS);
+    private final ExecutorService fixExecutor = SyncExecutors.newFixedDaemonPool("farm-sync-fix-", SYNC_FIX_THREADS);
+    private final ExecutorService directFixExecutor =
+            SyncExecutors.newBoundedDaemonPool("farm-sync-direct-", DIRECT_FIX_THREADS, DIRECT_FIX_QUEUE);
+    private final ExecutorService levelExecutor = SyncExecutors.newFixedDaemonPool("farm-sync-level-", SYNC_LEVEL_THREADS);
+    private final ScheduledExecutorService levelTimer = SyncExecutors.newScheduledDaemonPool("farm-sync-level-timer-", 1);
+    private final ScheduledExecutorService reloadRequeuer = SyncExecutors.newScheduledDaemonPool("farm-reload-requeue-", 1);
+    private final Map<String, AbstractEngine<?>> entityEngines = new ConcurrentHashMap<>();
+    private final Map<Long, Long> lastFullSync = new ConcurrentHashMap<>();
+    private final Map<Long, Map<String, Integer>> sampleCursors = new ConcurrentHashMap<>();
+
     @Override
     protected Log getLogger() {
         return LOGGER;
@@ -99,6 +164,16 @@ public class FarmEngine extends AbstractEngine<Farm> {
         isReady.set(true);
     }
 
+    @PreDestroy
+    public void shutdown() {
+        apiExecutor.shutdownNow();
+        fixExecutor.shutdownNow();
+        directFixExecutor.shutdownNow();
+        levelExecutor.shutdownNow();
+        levelTimer.shutdownNow();
+        reloadRequeuer.shutdownNow();
+    }
+
     private JpaRepositoryWithFindByName getRepository(String entityClass) {
         switch (entityClass) {
             case "virtualhost":
@@ -115,10 +190,22 @@ public class FarmEngine extends AbstractEngine<Farm> {
         }
     }
 
-    @JmsListener(destination = FarmQueue.QUEUE_RELOAD)
-    public void reload(Farm farm) {
+    /**
+     * Listener of QUEUE_RELOAD, registered by FarmOwnerListeners as QUEUE_SYNC: the
+     * reload takes the farm lease, which only the owner's SyncFarms renews and
+     * releases.
+     */
+    public void reload(Farm farm, final Map<String, String> jmsHeaders) {
+        if (!isOwner(farm, FarmQueue.QUEUE_RELOAD, jmsHeaders)) {
+            return;
+        }
+        if (STREAMING_RELOAD) {
+            executeStreamingReload(farm, jmsHeaders);
+            return;
+        }
         getDistMap().resetFarm(farm.getId());
         String apiWithSeparator = farm.getApi();
+        Arrays.stream(apiWithSeparator.split(",")).forEach(api -> forget(farm, api));
         Arrays.stream(apiWithSeparator.split(",")).forEach(api -> {
             executeFullReload(farm, getDriver(farm), getPropertiesWithEntities(farm, api));
         });
@@ -144,6 +231,16 @@ public class FarmEngine extends AbstractEngine<Farm> {
         } catch (Exception e) {
             LOGGER.error(ExceptionUtils.getStackTrace(e));
         }
+        Arrays.stream(farm.getApi().split(",")).forEach(api -> forget(farm, api));
+    }
+
+    /**
+     * Forgets what was kept of the farm API between syncs (fingerprint and
+     * driver caches), so nothing stale outlives a reload or the farm.
+     */
+    private void forget(final Farm farm, String api) {
+        SyncFingerprint.forget(farm.getId(), api);
+        getDriver(farm).forget(api);
     }
 
     @Override
@@ -156,9 +253,14 @@ public class FarmEngine extends AbstractEngine<Farm> {
         return getFarmRepository() != null ? getFarmRepository().findOne(id) : null;
     }
 
-    @SuppressWarnings({ "unchecked", "unused" })
-    @JmsListener(destination = FarmQueue.QUEUE_SYNC)
-    public void sync(Farm farm) {
+    /**
+     * Listener of QUEUE_SYNC, registered by FarmOwnerListeners so that only the
+     * owner of the farm selects it.
+     */
+    public void sync(Farm farm, final Map<String, String> jmsHeaders) {
+        if (!isOwner(farm, FarmQueue.QUEUE_SYNC, jmsHeaders)) {
+            return;
+        }
         if (lockerManager == null) {
             lockerManager = new LockerManager();
         }
@@ -168,18 +270,346 @@ public class FarmEngine extends AbstractEngine<Farm> {
         if (lockerManager.lock(farm.idName())) {
             getStatusDist().updateNewStatus(farm.idName(), true);
             String apiWithSeparator = farm.getApi();
-            Arrays.stream(apiWithSeparator.split(",")).forEach(api -> CounterDownLatch.put(api, -1));
-            EntityStatus statusConsolidated = getStatusConsolidated(farm, apiWithSeparator);
+            final long leaseToken = lockerManager.tokenOf(farm.idName());
+            Arrays.stream(apiWithSeparator.split(",")).forEach(api -> FixTracker.start(farm.getId(), api));
+            EntityStatus statusConsolidated;
+            if (isFullSyncDue(farm)) {
+                statusConsolidated = fullSync(farm, apiWithSeparator, leaseToken);
+            } else if (SAMPLED_SYNC) {
+                statusConsolidated = sampledSync(farm, apiWithSeparator, leaseToken);
+            } else {
+                statusConsolidated = incrementalSync(farm, apiWithSeparator, leaseToken);
+            }
             getDistMap().put(farm, statusConsolidated.toString());
+            getSyncInterval().synced(farm.idName(), statusConsolidated == OK);
         } else {
             LOGGER.info(FARM_STATUS_MSG_PREFIX + "Farm " + farm.getName() + " locked by an other process/node. Aborting Check & Sync Task.");
         }
     }
 
-    private EntityStatus getStatusConsolidated(final Farm farm, String apiWithSeparator) {
+    /**
+     * Farm messages are sent to the owner of the farm, but an untagged message, or
+     * one sent before a topology change, may still reach another node. It is then
+     * forwarded to the owner as this node sees it (up to io.galeb.sync.sharding.maxHops
+     * times, then dropped until the owner's next tick, or requeued for a reload)
+     * before any lease or sync state is taken, so only the owner runs it.
+     */
+    private boolean isOwner(final Farm farm, String queue, final Map<String, String> jmsHeaders) {
+        if (getFarmShards() == null || getFarmShards().isLocal(farm.getId())) {
+            return true;
+        }
+        final Object hopsHeader = jmsHeaders != null ? jmsHeaders.get(SYNC_HOPS_PROP) : null;
+        int hops = 0;
+        try {
+            hops = hopsHeader != null ? Integer.parseInt(hopsHeader.toString()) : 0;
+        } catch (NumberFormatException ignore) {
+            // first hop
+        }
+        if (hops < SYNC_MAX_HOPS) {
+            final Map<String, String> properties = new HashMap<>();
+            properties.put(SYNC_HOPS_PROP, String.valueOf(hops + 1));
+            if (jmsHeaders != null && jmsHeaders.containsKey(RELOAD_SINCE_PROP)) {
+                properties.put(RELOAD_SINCE_PROP, jmsHeaders.get(RELOAD_SINCE_PROP));
+            }
+            farmQueue().sendToOwner(queue, farm, properties,
+                    "ID:farm-" + farm.getId() + "-" + currentTimeMillis() + "-hop" + (hops + 1));
+        } else if (FarmQueue.QUEUE_RELOAD.equals(queue)) {
+            requeueReload(farm, reloadSinceOf(jmsHeaders));
+        } else {
+            LOGGER.debug(FARM_STATUS_MSG_PREFIX + "Farm " + farm.getName() + " not owned by this node. Dropping its message from " + queue);
+        }
+        return false;
+    }
+
+    /**
+     * Dry run of a full sync: loads the farm from the database, fetches and diffs
+     * each api and reports what would be pushed, with the time of each phase. The
+     * farm is not locked, no fix is tracked and nothing is enqueued.
+     */
+    public SyncPlan plan(final Farm farm) {
+        final SyncPlan plan = new SyncPlan(farm.getName());
+        final long start = currentTimeMillis();
+        final Map<String, List<?>> entitiesMap = getEntitiesMap(farm);
+        plan.setDbLoadMs(currentTimeMillis() - start)
+            .setLocalEntities(entitiesMap.values().stream().mapToInt(List::size).sum());
+        final Driver driver = getDriver(farm);
+        Arrays.stream(farm.getApi().split(",")).forEach(api -> {
+            final SyncPlan.ApiPlan apiPlan = new SyncPlan.ApiPlan(api);
+            try {
+                final Properties properties = getPropertiesWithEntities(farm, api, entitiesMap);
+                long phaseStart = currentTimeMillis();
+                final Map<String, Map<EntityKey, RemoteEntity>> remoteMultiMap = driver.getAll(properties);
+                apiPlan.setFetchMs(currentTimeMillis() - phaseStart)
+                       .setRemoteEntities(remoteMultiMap.values().stream().mapToInt(Map::size).sum());
+                phaseStart = currentTimeMillis();
+                final List<DiffEntry> diff = driver.diff(properties, remoteMultiMap);
+                apiPlan.setDiffMs(currentTimeMillis() - phaseStart).setDiff(diff);
+            } catch (Exception e) {
+                LOGGER.error(ExceptionUtils.getStackTrace(e));
+                apiPlan.setError(e.getMessage());
+            }
+            plan.addApi(apiPlan);
+        });
+        return plan;
+    }
+
+    private boolean isFullSyncDue(final Farm farm) {
+        if (!SAMPLED_SYNC && (!INCREMENTAL_SYNC || getSyncJournal() == null)) {
+            return true;
+        }
+        final Long lastFull = lastFullSync.get(farm.getId());
+        return lastFull == null || currentTimeMillis() - lastFull > FULL_SYNC_INTERVAL
+                || !OK.toString().equals(getDistMap().get(farm));
+    }
+
+    private EntityStatus fullSync(final Farm farm, String apiWithSeparator, long leaseToken) {
+        final long start = currentTimeMillis();
+        final Set<String> journaled = getSyncJournal() != null ?
+                getSyncJournal().drain(farm.getId()) : Collections.emptySet();
+        final EntityStatus status = getStatusConsolidated(farm, apiWithSeparator, null, null, leaseToken, FixMode.FIX);
+        if (status == ERROR) {
+            if (!journaled.isEmpty()) {
+                getSyncJournal().restore(farm.getId(), journaled);
+            }
+        } else if (INCREMENTAL_SYNC || SAMPLED_SYNC) {
+            lastFullSync.put(farm.getId(), start);
+        }
+        return status;
+    }
+
+    /**
+     * Diffs only what the handlers journaled since the last tick. Removals can't be
+     * diffed this way (alias virtualhosts and children would be left behind), so a
+     * journaled entity missing from the database escalates to a full sync.
+     */
+    private EntityStatus incrementalSync(final Farm farm, String apiWithSeparator, long leaseToken) {
+        final long farmId = farm.getId();
+        if (!getSyncJournal().hasChanges(farmId)) {
+            LOGGER.info(FARM_STATUS_MSG_PREFIX + "No journaled changes - " + farm.getName());
+            Arrays.stream(apiWithSeparator.split(",")).forEach(api -> FixTracker.reset(farmId, api));
+            return OK;
+        }
+        final Set<String> changes = getSyncJournal().drain(farmId);
+        final Map<String, List<?>> entitiesMap = new HashMap<>();
+        final Map<String, Set<String>> idsByPath = new HashMap<>();
+        try {
+            if (!loadJournaledEntities(farm, changes, entitiesMap, idsByPath)) {
+                LOGGER.info(FARM_STATUS_MSG_PREFIX + "Journaled removal, escalating to full sync - " + farm.getName());
+                getSyncJournal().restore(farmId, changes);
+                return fullSync(farm, apiWithSeparator, leaseToken);
+            }
+        } catch (Exception e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            getSyncJournal().restore(farmId, changes);
+            Arrays.stream(apiWithSeparator.split(",")).forEach(api -> FixTracker.reset(farmId, api));
+            return ERROR;
+        }
+        final EntityStatus status = getStatusConsolidated(farm, apiWithSeparator, entitiesMap, idsByPath, leaseToken, FixMode.FIX);
+        if (status == ERROR) {
+            getSyncJournal().restore(farmId, changes);
+        }
+        return status;
+    }
+
+    /**
+     * Verifies a rotating page of each entity type instead of the whole farm, so a
+     * tick costs about the same whatever the farm size and a drifted entity is seen
+     * within (entities / io.galeb.sync.sample.size) ticks. A mismatch escalates
+     * straight to a full sync; otherwise journaled changes are applied as in the
+     * incremental sync. Entities only known by the farm are left to the full sync.
+     */
+    private EntityStatus sampledSync(final Farm farm, String apiWithSeparator, long leaseToken) {
+        final long farmId = farm.getId();
+        final Map<String, List<?>> entitiesMap = new HashMap<>();
+        final Map<String, Set<String>> idsByPath = new HashMap<>();
+        try {
+            loadSample(farm, entitiesMap, idsByPath);
+        } catch (Exception e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            Arrays.stream(apiWithSeparator.split(",")).forEach(api -> FixTracker.reset(farmId, api));
+            return ERROR;
+        }
+        if (!idsByPath.isEmpty()) {
+            final EntityStatus sampleStatus = getStatusConsolidated(farm, apiWithSeparator, entitiesMap, idsByPath, leaseToken, FixMode.VERIFY_ONLY);
+            if (sampleStatus == ERROR) {
+                return ERROR;
+            }
+            if (sampleStatus != OK) {
+                LOGGER.warn(FARM_STATUS_MSG_PREFIX + "Sample mismatch, escalating to full sync - " + farm.getName());
+                return fullSync(farm, apiWithSeparator, leaseToken);
+            }
+        }
+        if (getSyncJournal() == null) {
+            Arrays.stream(apiWithSeparator.split(",")).forEach(api -> FixTracker.reset(farmId, api));
+            return OK;
+        }
+        return incrementalSync(farm, apiWithSeparator, leaseToken);
+    }
+
+    private void loadSample(final Farm farm,
+                            final Map<String, List<?>> entitiesMap,
+                            final Map<String, Set<String>> idsByPath) {
+        final Map<String, Integer> cursors = sampleCursors.computeIfAbsent(farm.getId(), id -> new ConcurrentHashMap<>());
+        Authentication currentUser = CurrentUser.getCurrentAuth();
+        SystemUserService.runAs();
+        try {
+            loadSamplePage(farm, VirtualHost.class.getSimpleName().toLowerCase(), getVirtualHostRepository(),
+                    LocalEntity::fromVirtualHostTuples, cursors, entitiesMap, idsByPath);
+            loadSamplePage(farm, BackendPool.class.getSimpleName().toLowerCase(), getPoolRepository(),
+                    LocalEntity::fromPoolTuples, cursors, entitiesMap, idsByPath);
+            loadSamplePage(farm, Backend.class.getSimpleName().toLowerCase(), getTargetRepository(),
+                    LocalEntity::fromTargetTuples, cursors, entitiesMap, idsByPath);
+            loadSamplePage(farm, Rule.class.getSimpleName().toLowerCase(), getRuleRepository(),
+                    LocalEntity::fromRuleTuples, cursors, entitiesMap, idsByPath);
+        } finally {
+            SystemUserService.runAs(currentUser);
+        }
+    }
+
+    /**
+     * Loads the diff projections (see LocalEntity) of one page of entity ids, so the
+     * sample costs two light queries instead of a page of full entities.
+     */
+    private void loadSamplePage(final Farm farm,
+                                String path,
+                                final FarmIDable<?> repository,
+                                final Function<List<Object[]>, List<LocalEntity>> fromTuples,
+                                final Map<String, Integer> cursors,
+                                final Map<String, List<?>> entitiesMap,
+                                final Map<String, Set<String>> idsByPath) {
+        final int cursor = cursors.computeIfAbsent(path, k -> ThreadLocalRandom.current().nextInt(1 << 16));
+        Page<Long> page = repository.findIdsByFarmId(farm.getId(), samplePageOf(cursor));
+        if (!page.hasContent() && page.getTotalPages() > 0) {
+            page = repository.findIdsByFarmId(farm.getId(), samplePageOf(cursor % page.getTotalPages()));
+        }
+        cursors.put(path, (page.getNumber() + 1) % Math.max(1, page.getTotalPages()));
+        if (!page.hasContent()) {
+            return;
+        }
+        final List<LocalEntity> sample = fromTuples.apply(
+                repository.findDiffTuplesByFarmIdAndIdIn(farm.getId(), page.getContent()));
+        final Set<String> ids = new HashSet<>();
+        sample.forEach(entity -> {
+            ids.add(entity.getName());
+            ids.addAll(entity.getAliases());
+        });
+        entitiesMap.put(path, sample);
+        idsByPath.put(path, ids);
+    }
+
+    /**
+     * The farm is read by name, and a name isn't unique under every parent (a target
+     * ip:port may belong to several pools). Only the remote entries under a parent
+     * of the sampled entity are compared: the others belong to entities outside the
+     * sample and would otherwise be seen as removals.
+     */
+    private Map<String, Map<EntityKey, RemoteEntity>> retainSampled(final Map<String, Map<EntityKey, RemoteEntity>> remoteMultiMap,
+                                                                    final Map<String, List<?>> entitiesMap) {
+        final Map<String, Map<String, Set<String>>> parentsByPath = new HashMap<>();
+        entitiesMap.forEach((path, entities) -> {
+            final Map<String, Set<String>> parentsByName = parentsByPath.computeIfAbsent(path, k -> new HashMap<>());
+            entities.stream().filter(entity -> entity instanceof LocalEntity).map(entity -> (LocalEntity) entity)
+                    .filter(entity -> !entity.isRoot())
+                    .forEach(entity -> {
+                        final Set<String> parents = parentsByName.computeIfAbsent(entity.getName(), k -> new HashSet<>());
+                        parents.addAll(entity.getParents());
+                        parents.addAll(entity.getParentAliases());
+                    });
+        });
+        final Map<String, Map<EntityKey, RemoteEntity>> sampled = new HashMap<>();
+        remoteMultiMap.forEach((path, remoteMap) -> sampled.put(path, remoteMap.entrySet().stream()
+                .filter(remote -> {
+                    final EntityKey key = remote.getKey();
+                    final Set<String> parents = parentsByPath.getOrDefault(key.getEntityType(), Collections.emptyMap())
+                            .get(key.getId());
+                    return parents == null || parents.contains(key.getParentId());
+                })
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))));
+        return sampled;
+    }
+
+    private Pageable samplePageOf(int page) {
+        return new PageRequest(page, SAMPLE_SIZE, Sort.Direction.ASC, "id");
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean loadJournaledEntities(final Farm farm,
+                                          final Set<String> changes,
+                                          final Map<String, List<?>> entitiesMap,
+                                          final Map<String, Set<String>> idsByPath) {
+        final Map<String, List<AbstractEntity<?>>> localByPath = new HashMap<>();
+        Authentication currentUser = CurrentUser.getCurrentAuth();
+        SystemUserService.runAs();
+        try {
+            for (String change : changes) {
+                final int separator = change.indexOf(SyncJournal.SEP);
+                final String managerEntityType = change.substring(0, separator);
+                final String name = change.substring(separator + 1);
+                final JpaRepositoryWithFindByName repository = getRepository(managerEntityType);
+                if (repository == null) {
+                    continue;
+                }
+                final String path = MANAGER_TO_FARM_ENTITY_MAP.get(managerEntityType).getSimpleName().toLowerCase();
+                final List<AbstractEntity<?>> locals = ((Page<AbstractEntity<?>>) repository.findByName(name, ALL_PAGES))
+                        .getContent().stream()
+                        .filter(entity -> entity instanceof WithFarmID &&
+                                ((WithFarmID<?>) entity).getFarmId() == farm.getId())
+                        .collect(Collectors.toList());
+                if (locals.isEmpty()) {
+                    return false;
+                }
+                localByPath.computeIfAbsent(path, k -> new ArrayList<>()).addAll(locals);
+                final Set<String> ids = idsByPath.computeIfAbsent(path, k -> new HashSet<>());
+                ids.add(name);
+                locals.stream().filter(entity -> entity instanceof VirtualHost)
+                        .forEach(entity -> ids.addAll(((VirtualHost) entity).getAliases()));
+            }
+        } finally {
+            SystemUserService.runAs(currentUser);
+        }
+        entitiesMap.putAll(localByPath);
+        return true;
+    }
+
+    private EntityStatus getStatusConsolidated(final Farm farm,
+                                               String apiWithSeparator,
+                                               final Map<String, List<?>> journaledEntities,
+                                               final Map<String, Set<String>> idsByPath,
+                                               long leaseToken,
+                                               FixMode mode) {
         EntityStatus result = UNKNOWN;
-        final Map<String, EntityStatus> statusMap = new HashMap<>();
-        Arrays.stream(apiWithSeparator.split(",")).forEach(api -> diffByApiAndFix(farm, statusMap, api));
+        final Map<String, EntityStatus> statusMap = new ConcurrentHashMap<>();
+        final String[] apis = apiWithSeparator.split(",");
+        Map<String, List<?>> entitiesMap = journaledEntities;
+        try {
+            if (entitiesMap == null) {
+                LOGGER.info(FARM_STATUS_MSG_PREFIX + "Retrieving entities from database - " + farm.getName());
+                entitiesMap = getEntitiesMap(farm);
+            }
+        } catch (Exception e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            Arrays.stream(apis).forEach(api -> {
+                FixTracker.reset(farm.getId(), api);
+                statusMap.put(api, ERROR);
+            });
+        }
+        if (entitiesMap != null) {
+            final Map<String, List<?>> entitiesOfFarm = entitiesMap;
+            final Map<String, Future<?>> tasks = new LinkedHashMap<>();
+            Arrays.stream(apis).forEach(api ->
+                    tasks.put(api, apiExecutor.submit(() -> diffByApiAndFix(farm, statusMap, api, entitiesOfFarm, idsByPath, leaseToken, mode))));
+            tasks.forEach((api, task) -> {
+                try {
+                    task.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    statusMap.putIfAbsent(api, ERROR);
+                } catch (ExecutionException e) {
+                    LOGGER.error(ExceptionUtils.getStackTrace(e.getCause()));
+                    statusMap.put(api, ERROR);
+                }
+            });
+        }
         if (statusMap.containsValue(PENDING)) {
             result = PENDING;
         }
@@ -193,155 +623,430 @@ public class FarmEngine extends AbstractEngine<Farm> {
         return result;
     }
 
-    private void diffByApiAndFix(Farm farm, final Map<String, EntityStatus> statusMap, String api) {
+    private void diffByApiAndFix(Farm farm,
+                                 final Map<String, EntityStatus> statusMap,
+                                 String api,
+                                 final Map<String, List<?>> entitiesMap,
+                                 final Map<String, Set<String>> idsByPath,
+                                 long leaseToken,
+                                 FixMode mode) {
         long start = currentTimeMillis();
+        final boolean verifyOnly = mode == FixMode.VERIFY_ONLY;
         final Driver driver = getDriver(farm);
 
         long farmId = farm.getId();
         String farmName = farm.getName();
 
         String farmFull = farmName + " (" + farmId + ") [ " + api + " ]";
-        LOGGER.info(FARM_STATUS_MSG_PREFIX + "Retrieving entities from database - " + farmFull);
         try {
-            final Properties properties = getPropertiesWithEntities(farm, api);
+            final Properties properties = getPropertiesWithEntities(farm, api, entitiesMap);
             LOGGER.info(FARM_STATUS_MSG_PREFIX + "Starting Check & Sync task - " + farmFull);
 
             long diffStart = currentTimeMillis();
-            final Map<String, Map<String, Map<String, String>>> remoteMultiMap = driver.getAll(properties);
-            final Map<String, Map<String, Object>> diff = new HashMap<>();
-            diff.putAll(driver.diff(properties, remoteMultiMap));
+            final Map<String, Map<EntityKey, RemoteEntity>> fetched = idsByPath == null ?
+                    driver.getAll(properties) : driver.getByIds(properties, idsByPath);
+            final Map<String, Map<EntityKey, RemoteEntity>> remoteMultiMap = verifyOnly ?
+                    retainSampled(fetched, entitiesMap) : fetched;
+            final boolean fullDiff = idsByPath == null;
+            final long localFingerprint = fullDiff ? SyncFingerprint.ofLocal(entitiesMap) : 0L;
+            final long remoteFingerprint = fullDiff ? SyncFingerprint.ofRemote(remoteMultiMap) : 0L;
+            if (fullDiff && SyncFingerprint.isUnchanged(farmId, api, localFingerprint, remoteFingerprint)) {
+                FixTracker.expect(farmId, api, 0);
+                LOGGER.info(FARM_STATUS_MSG_PREFIX + "OK (unchanged since last diff): " + farmFull + " ("
+                        + (currentTimeMillis() - start) + " ms)");
+                statusMap.put(api, OK);
+                return;
+            }
+            final List<DiffEntry> diff = driver.diff(properties, remoteMultiMap);
             int diffSize = diff.size();
 
             String diffDurationMsg = FARM_STATUS_MSG_PREFIX + "diff from " + farmFull + " finished ("
                     + (currentTimeMillis() - diffStart) + " ms)";
             LOGGER.info(diffDurationMsg);
 
-            CounterDownLatch.put(api, diffSize);
+            if (!verifyOnly) {
+                FixTracker.expect(farmId, api, diffSize);
+            }
 
             updateStatus(remoteMultiMap, farmId);
             if (diffSize == 0) {
                 LOGGER.info(FARM_STATUS_MSG_PREFIX + "OK: " + farmFull + " ("
                         + (currentTimeMillis() - start) + " ms)");
+                if (fullDiff) {
+                    SyncFingerprint.consistent(farmId, api, localFingerprint, remoteFingerprint);
+                }
 
                 statusMap.put(api, OK);
+            } else if (verifyOnly) {
+                LOGGER.warn(FARM_STATUS_MSG_PREFIX + "INCONSISTENT sample (" + diffSize + " diff(s)): " + farmFull
+                        + " (" + (currentTimeMillis() - start) + " ms)");
+                statusMap.put(api, PENDING);
             } else {
                 LOGGER.warn(FARM_STATUS_MSG_PREFIX + "INCONSISTENT (" + diffSize + " fix(es)): " + farmFull
                         + " (" + (currentTimeMillis() - start) + " ms). Calling fixFarm task.");
-                fixFarm(farm, diff, driver, api);
-                statusMap.put(api, PENDING);
+                if (fixFarm(farm, diff, driver, api, leaseToken, mode == FixMode.FIX_IN_BULK)) {
+                    statusMap.put(api, PENDING);
+                } else {
+                    FixTracker.reset(farmId, api);
+                    statusMap.put(api, ERROR);
+                }
             }
 
         } catch (Exception e) {
-            CounterDownLatch.reset(api);
+            FixTracker.reset(farmId, api);
+            SyncFingerprint.forget(farmId, api);
             LOGGER.error(ExceptionUtils.getStackTrace(e));
             LOGGER.error(FARM_STATUS_MSG_PREFIX + farmFull + " FAILED");
             statusMap.put(api, ERROR);
         }
     }
 
-    private void updateStatus(final Map<String, Map<String, Map<String, String>>> remoteMultiMap, final Long farmId) {
-        remoteMultiMap.entrySet().forEach(entryWithPath -> {
-            entryWithPath.getValue().entrySet().forEach(entryWithEntity -> {
-                Map<String, String> entityMap = entryWithEntity.getValue();
-                String entityType = entityMap.get("_entity_type");
-                Entity entity = Backend.class.getSimpleName().toLowerCase().equals(entityType) ? new Backend() : new Entity();
-                String id = entityMap.get("id");
-                String version = entityMap.get("version");
-                version = version != null ? version : "0";
-                String parentId = entityMap.get("parentId");
-                parentId = parentId != null && !Rule.class.getSimpleName().toLowerCase().equals(entityType) ? parentId : "";
-                String healthObj = Backend.class.getSimpleName().toLowerCase().equals(entityType) ? entityMap.get("health") : null;
-                entity.setId(id);
+    private void updateStatus(final Map<String, Map<EntityKey, RemoteEntity>> remoteMultiMap, final Long farmId) {
+        remoteMultiMap.values().forEach(remoteMap -> {
+            remoteMap.values().forEach(remote -> {
+                String entityType = remote.getEntityType();
+                boolean isBackend = Backend.class.getSimpleName().toLowerCase().equals(entityType);
+                Entity entity = isBackend ? new Backend() : new Entity();
+                String parentId = !Rule.class.getSimpleName().toLowerCase().equals(entityType) ? remote.getParentId() : "";
+                entity.setId(remote.getId());
                 entity.setParentId(parentId);
-                entity.setVersion(Integer.parseInt(version));
+                entity.setVersion(remote.getVersion());
                 entity.setEntityType(entityType);
-                if (healthObj != null) {
-                    ((Backend) entity).setHealth(Backend.Health.valueOf(healthObj));
+                if (isBackend) {
+                    ((Backend) entity).setHealth(remote.getHealth());
                 }
                 entity.getProperties().put(DIST_MAP_FARM_ID_PROP, farmId);
-                getDistMap().put(entity, JsonObject.toJsonString(entity));
+                getDistMap().put(entity, remote.hasVersion() ? JsonObject.toJsonString(entity) : PENDING.toString());
             });
         });
     }
 
-    @SuppressWarnings("unchecked")
-    private void fixFarm(final Farm farm,
-                         final Map<String, Map<String, Object>> diff,
-                         final Driver driver,
-                         final String api) {
+    /**
+     * Applies the diff level by level. The lease is renewed with the fencing token
+     * of the sync before each level, and the token travels with every fix down to
+     * the driver, which refuses the write once the lease changed hands. In bulk,
+     * each level of creates and updates goes to the farm in driver batches instead
+     * of one listener call per entity.
+     *
+     * @return false if the lease was lost before the first level
+     */
+    private boolean fixFarm(final Farm farm,
+                            final List<DiffEntry> diff,
+                            final Driver driver,
+                            final String api,
+                            long leaseToken,
+                            boolean inBulk) {
 
         LOGGER.warn(FARM_STATUS_MSG_PREFIX + "Synchronizing Farm " + farm.getName());
 
-        final AtomicReference<Set<String>> entityTypes = new AtomicReference<>(new HashSet<>());
+        return applyLevels(farm, FixPlanner.plan(diff).iterator(), driver, api, leaseToken, inBulk, diff.size());
+    }
+
+    /**
+     * Applies levels until one has to be confirmed by the farm before the next. The
+     * rest of the plan is then chained on that confirmation and resumed on the level
+     * pool, so no api thread is held while the farm catches up.
+     */
+    private boolean applyLevels(final Farm farm,
+                                final Iterator<FixPlanner.Level> levels,
+                                final Driver driver,
+                                final String api,
+                                long leaseToken,
+                                boolean inBulk,
+                                int pending) {
+        int remaining = pending;
+        while (levels.hasNext()) {
+            final FixPlanner.Level level = levels.next();
+            if (!lockerManager.renew(farm.idName(), leaseToken)) {
+                LOGGER.error(FARM_STATUS_MSG_PREFIX + "Lease lost (token " + leaseToken + "): " + farm.getName()
+                        + " [ " + api + " ]. Skipping " + (remaining) + " fix(es).");
+                return false;
+            }
+            remaining -= level.size();
+            LOGGER.info("Applying " + level + " (Farm " + farm.getId() + ") [ " + api + " ]");
+            if (level.isRemove()) {
+                final List<Properties> removes = level.getEntries().stream()
+                        .map(diffEntry -> makeBaseProperty(farm, api, diffEntry.getId(),
+                                diffEntry.getParentId(), diffEntry.getEntityType(), leaseToken))
+                        .collect(Collectors.toList());
+                removeEntitiesFromFarm(driver, removes, api);
+            } else {
+                if (inBulk) {
+                    applyLevelInBulk(farm, level, driver, api, leaseToken);
+                } else {
+                    applyLevel(farm, level, api, leaseToken);
+                }
+                if (levels.hasNext()) {
+                    final int next = remaining;
+                    awaitLevel(farm, level, driver, api, remaining).thenRunAsync(() -> {
+                        if (!applyLevels(farm, levels, driver, api, leaseToken, inBulk, next)) {
+                            FixTracker.reset(farm.getId(), api);
+                        }
+                    }, levelExecutor).exceptionally(error -> {
+                        LOGGER.error(ExceptionUtils.getStackTrace(error));
+                        FixTracker.reset(farm.getId(), api);
+                        return null;
+                    });
+                    return true;
+                }
+            }
+        }
+        return true;
+    }
 
-        diff.entrySet().forEach(diffEntrySet -> {
+    private void applyLevel(final Farm farm, final FixPlanner.Level level, final String api, long leaseToken) {
+        final List<Future<?>> tasks = level.getEntries().stream()
+                .map(diffEntry -> fixExecutor.submit(() -> fixEntity(farm, diffEntry, api, leaseToken)))
+                .collect(Collectors.toList());
+        tasks.forEach(task -> {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                LOGGER.error(ExceptionUtils.getStackTrace(e.getCause()));
+            }
+        });
+    }
 
+    /**
+     * Pushes a level of creates and updates with one createAll and one updateAll,
+     * from the writes each entity engine makes for a fix (see
+     * AbstractEngine.makeFixProperties). Entries an engine has no writes for are
+     * fixed one by one, as out of bulk.
+     */
+    @SuppressWarnings("unchecked")
+    private void applyLevelInBulk(final Farm farm, final FixPlanner.Level level, final Driver driver, final String api, long leaseToken) {
+        final List<Properties> creates = new ArrayList<>();
+        final List<Properties> updates = new ArrayList<>();
+        final List<Future<?>> oneByOne = new ArrayList<>();
+        level.getEntries().forEach(diffEntry -> {
+            try {
+                final String managerEntityType = getManagerEntityType(diffEntry.getEntityType());
+                final AbstractEngine<AbstractEntity<?>> engine =
+                        (AbstractEngine<AbstractEntity<?>>) entityEngines.get(managerEntityType);
+                final AbstractEntity<?> entity = engine != null ?
+                        findEntity(managerEntityType, diffEntry.getId(), diffEntry.getParentId()) : null;
+                final List<Properties> writes = entity != null ? engine.makeFixProperties(entity, diffEntry.getParentId(),
+                        fixHeaders(farm, api, diffEntry.getParentId(), leaseToken)) : Collections.emptyList();
+                if (writes.isEmpty()) {
+                    oneByOne.add(fixExecutor.submit(() -> fixEntity(farm, diffEntry, api, leaseToken)));
+                } else if (diffEntry.getAction() == CREATE) {
+                    creates.addAll(writes);
+                } else {
+                    updates.addAll(writes);
+                }
+            } catch (Exception e) {
+                LOGGER.error(ExceptionUtils.getStackTrace(e));
+                FixTracker.fixed(farm.getId(), api);
+            }
+        });
+        LOGGER.info("Pushing " + creates.size() + " create(s) and " + updates.size() + " update(s) in bulk (Farm "
+                + farm.getId() + ") [ " + api + " ]");
+        if (!creates.isEmpty()) {
+            logWriteResults(driver.createAll(creates), "create(s)", api);
+        }
+        if (!updates.isEmpty()) {
+            logWriteResults(driver.updateAll(updates), "update(s)", api);
+        }
+        oneByOne.forEach(task -> {
             try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                LOGGER.error(ExceptionUtils.getStackTrace(e.getCause()));
+            }
+        });
+    }
 
-                CounterDownLatch.refresh(api);
+    /**
+     * Applies a sync-originated fix straight through the entity engine on the local
+     * direct fix pool, skipping the broker round trip and the serialization of the
+     * entity. The driver call still releases the pending fix, as from JMS.
+     *
+     * @return false if the pool is full (io.galeb.sync.fix.direct.queue), so the
+     * fix is sent through the entity queue instead
+     */
+    private boolean fixInProcess(final ActionOnDiff action,
+                                 final AbstractEngine<AbstractEntity<?>> engine,
+                                 final AbstractEntity<?> entity,
+                                 final Map<String, String> jmsHeaders) {
+        LOGGER.debug("Fixing " + entity.getName() + " in process [action: " + action + "]");
+        try {
+            directFixExecutor.execute(() -> {
+                try {
+                    if (action == CREATE) {
+                        engine.create(entity, jmsHeaders);
+                    } else {
+                        engine.update(entity, jmsHeaders);
+                    }
+                } catch (Exception e) {
+                    LOGGER.error(ExceptionUtils.getStackTrace(e));
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Direct fix pool full. Sending " + entity.getName() + " to the queue [action: " + action + "]");
+            return false;
+        }
+    }
 
-                final Map<String, Object> attributes = diffEntrySet.getValue();
+    /**
+     * Completes once the level is confirmed or after io.galeb.sync.fix.level.timeout,
+     * whichever comes first. The fixes of the level may be applied by any node, and
+     * FixTracker only sees those applied by this one, so besides its local count
+     * (at most remaining fixes pending) the level is confirmed when every entity of
+     * it is found on the farm, polled every io.galeb.sync.fix.level.poll.
+     */
+    private CompletableFuture<Void> awaitLevel(final Farm farm,
+                                               final FixPlanner.Level level,
+                                               final Driver driver,
+                                               final String api,
+                                               int remaining) {
+        final CompletableFuture<Void> next = new CompletableFuture<>();
+        final ScheduledFuture<?> timeout = levelTimer.schedule(() -> {
+            if (next.complete(null)) {
+                LOGGER.warn(FARM_STATUS_MSG_PREFIX + level + " not confirmed after " + FIX_LEVEL_TIMEOUT
+                        + " ms (Farm " + farm.getId() + ") [ " + api + " ]. Going on with the next level");
+            }
+        }, FIX_LEVEL_TIMEOUT, TimeUnit.MILLISECONDS);
+        final Set<EntityKey> unconfirmed = ConcurrentHashMap.newKeySet();
+        level.getEntries().forEach(diffEntry -> unconfirmed.add(diffEntry.getKey()));
+        final AtomicBoolean polling = new AtomicBoolean(false);
+        final ScheduledFuture<?> poll = levelTimer.scheduleWithFixedDelay(() -> {
+            if (polling.compareAndSet(false, true)) {
+                levelExecutor.execute(() -> {
+                    try {
+                        if (!next.isDone() && confirmOnFarm(driver, api, unconfirmed)) {
+                            next.complete(null);
+                        }
+                    } finally {
+                        polling.set(false);
+                    }
+                });
+            }
+        }, FIX_LEVEL_POLL, FIX_LEVEL_POLL, TimeUnit.MILLISECONDS);
+        FixTracker.whenPendingAtMost(farm.getId(), api, remaining).whenComplete((confirmed, error) -> {
+            if (error != null) {
+                LOGGER.error(ExceptionUtils.getStackTrace(error));
+            }
+            next.complete(null);
+        });
+        next.whenComplete((done, error) -> {
+            timeout.cancel(false);
+            poll.cancel(false);
+        });
+        return next;
+    }
+
+    /**
+     * Fetches the entities of a level not found yet and forgets those now on the
+     * farm.
+     *
+     * @return true once all of them were found
+     */
+    private boolean confirmOnFarm(final Driver driver, final String api, final Set<EntityKey> unconfirmed) {
+        final Map<String, Set<String>> idsByPath = new HashMap<>();
+        unconfirmed.forEach(key -> idsByPath.computeIfAbsent(key.getEntityType(), path -> new HashSet<>()).add(key.getId()));
+        if (idsByPath.isEmpty()) {
+            return true;
+        }
+        final Properties properties = new Properties();
+        properties.put(API_PROP, api);
+        try {
+            driver.getByIds(properties, idsByPath).values().forEach(remoteMap -> unconfirmed.removeAll(remoteMap.keySet()));
+        } catch (Exception e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+        }
+        return unconfirmed.isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fixEntity(final Farm farm, final DiffEntry diffEntry, final String api, long leaseToken) {
+        try {
 
-                final ActionOnDiff action = (ActionOnDiff) attributes.get("ACTION");
-                final String id = String.valueOf(attributes.get("ID"));
-                final String parentId = String.valueOf(attributes.get("PARENT_ID"));
-                final String entityType = String.valueOf(attributes.get("ENTITY_TYPE"));
+            FixTracker.refresh(farm.getId(), api);
 
-                LOGGER.info("Processing DIFF (Farm " + farm.getId() + ") => " +
-                        "{ ACTION: '" + action.toString()
-                        + "', ID: '" + id
-                        + "', PARENT_ID: '" + parentId
-                        + "', ENTITY_TYPE: '"
-                        + entityType + "' }");
+            if (!lockerManager.isValid(farm.idName(), leaseToken)) {
+                LOGGER.error("Lease lost (token " + leaseToken + "). Skipping " + diffEntry);
+                FixTracker.fixed(farm.getId(), api);
+                return;
+            }
 
-                entityTypes.get().add(entityType);
+            final ActionOnDiff action = diffEntry.getAction();
+            final String id = diffEntry.getId();
+            final String parentId = diffEntry.getParentId();
+            final String entityType = diffEntry.getEntityType();
 
-                final String managerEntityType = getManagerEntityType(entityType);
+            LOGGER.info("Processing DIFF (Farm " + farm.getId() + ") => " + diffEntry);
 
-                JpaRepositoryWithFindByName repository = getRepository(managerEntityType);
-                if (repository != null) {
-                    AbstractEntity<?> entityFromRepository = null;
+            final String managerEntityType = getManagerEntityType(entityType);
 
-                    SystemUserService.runAs();
-                    Page<?> elements = repository.findByName(id, new PageRequest(0, Integer.MAX_VALUE));
-                    Stream<AbstractEntity<?>> elementsStream = (Stream<AbstractEntity<?>>) StreamSupport.stream(elements.spliterator(), false);
-                    entityFromRepository = getEntityIfExist(id, parentId, elementsStream).orElse(null);
-                    SystemUserService.clearContext();
+            JpaRepositoryWithFindByName repository = getRepository(managerEntityType);
+            if (repository != null) {
+                final AbstractEntity<?> entityFromRepository = findEntity(managerEntityType, id, parentId);
 
-                    if (entityFromRepository == null && action != REMOVE) {
-                        LOGGER.error("Entity " + id + " (parent: " + parentId + ") NOT FOUND [" + managerEntityType + "]");
-                        CounterDownLatch.decrementDiffCounter(api);
-                    } else {
-                        AbstractEnqueuer queue = getQueueLocator().getQueue(managerEntityType);
-                        if (action == REMOVE) {
-                            LOGGER.debug("Sending " + id + " to " + queue + " queue [action: " + action + "]");
-                            removeEntityFromFarm(driver, makeBaseProperty(api, id, parentId, entityType));
-                        } else {
-                            LOGGER.debug("Sending " + entityFromRepository.getName() + " to " + queue + " queue [action: " + action + "]");
-                            final Map<String, String> jmsHeaders = new HashMap<>();
-                            jmsHeaders.put(API_PROP, api);
-                            jmsHeaders.put(PARENTID_PROP, parentId);
-                            switch (action) {
-                                case CREATE:
-                                    createEntityOnFarm(queue, entityFromRepository, jmsHeaders);
-                                    break;
-                                case UPDATE:
-                                    updateEntityOnFarm(queue, entityFromRepository, jmsHeaders);
-                                    break;
-                                default:
-                                    LOGGER.error("ACTION " + action + "(entityType: " + entityType + " - id: " + id + " - parentId: " + parentId + ") NOT EXIST");
-                            }
-                            LOGGER.debug("Send " + entityFromRepository.getName() + " to " + queue + " queue [action: " + action + "] finish");
-                        }
-                    }
+                if (entityFromRepository == null) {
+                    LOGGER.error("Entity " + id + " (parent: " + parentId + ") NOT FOUND [" + managerEntityType + "]");
+                    FixTracker.fixed(farm.getId(), api);
                 } else {
-                    LOGGER.error("Repository is NULL: " + managerEntityType);
+                    final Map<String, String> jmsHeaders = fixHeaders(farm, api, parentId, leaseToken);
+                    final AbstractEngine<AbstractEntity<?>> engine = DIRECT_FIX ?
+                            (AbstractEngine<AbstractEntity<?>>) entityEngines.get(managerEntityType) : null;
+                    if (engine != null && (action == CREATE || action == UPDATE)
+                            && fixInProcess(action, engine, entityFromRepository, jmsHeaders)) {
+                        return;
+                    }
+                    AbstractEnqueuer queue = getQueueLocator().getQueue(managerEntityType);
+                    LOGGER.debug("Sending " + entityFromRepository.getName() + " to " + queue + " queue [action: " + action + "]");
+                    switch (action) {
+                        case CREATE:
+                            createEntityOnFarm(queue, entityFromRepository, jmsHeaders);
+                            break;
+                        case UPDATE:
+                            updateEntityOnFarm(queue, entityFromRepository, jmsHeaders);
+                            break;
+                        default:
+                            LOGGER.error("ACTION " + action + "(entityType: " + entityType + " - id: " + id + " - parentId: " + parentId + ") NOT EXIST");
+                            FixTracker.fixed(farm.getId(), api);
+                    }
+                    LOGGER.debug("Send " + entityFromRepository.getName() + " to " + queue + " queue [action: " + action + "] finish");
                 }
-            } catch (Exception e) {
-                LOGGER.error(ExceptionUtils.getStackTrace(e));
-                CounterDownLatch.decrementDiffCounter(api);
+            } else {
+                LOGGER.error("Repository is NULL: " + managerEntityType);
+                FixTracker.fixed(farm.getId(), api);
             }
-        });
+        } catch (Exception e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            FixTracker.fixed(farm.getId(), api);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private AbstractEntity<?> findEntity(String managerEntityType, String id, String parentId) {
+        final JpaRepositoryWithFindByName repository = getRepository(managerEntityType);
+        if (repository == null) {
+            return null;
+        }
+        SystemUserService.runAs();
+        try {
+            Page<?> elements = repository.findByName(id, new PageRequest(0, Integer.MAX_VALUE));
+            Stream<AbstractEntity<?>> elementsStream = (Stream<AbstractEntity<?>>) StreamSupport.stream(elements.spliterator(), false);
+            return getEntityIfExist(id, parentId, elementsStream).orElse(null);
+        } finally {
+            SystemUserService.clearContext();
+        }
+    }
+
+    private Map<String, String> fixHeaders(final Farm farm, String api, String parentId, long leaseToken) {
+        final Map<String, String> jmsHeaders = new HashMap<>();
+        jmsHeaders.put(API_PROP, api);
+        jmsHeaders.put(PARENTID_PROP, parentId);
+        jmsHeaders.put(FARMID_PROP, String.valueOf(farm.getId()));
+        jmsHeaders.put(LEASE_PROP, farm.idName());
+        jmsHeaders.put(LEASE_TOKEN_PROP, String.valueOf(leaseToken));
+        return jmsHeaders;
     }
 
     private void executeFullReload(Farm farm, Driver driver, Properties properties) {
@@ -351,13 +1056,94 @@ public class FarmEngine extends AbstractEngine<Farm> {
         driver.remove(properties);
     }
 
-    private void removeEntityFromFarm(Driver driver, Properties properties) {
-        driver.remove(properties);
+    /**
+     * Reloads the farm without wiping it first: the whole desired state is diffed
+     * against a fresh getAll and pushed in dependency order, one driver batch per
+     * level, and orphans are only removed once everything else is in place, so the
+     * farm keeps serving during the reload. Runs on the owner of the farm under its
+     * lease, which is then renewed and released by SyncFarms as for a sync. If the farm is locked, the reload is
+     * sent back to the queue after io.galeb.reload.retryDelay instead of holding
+     * the listener, until io.galeb.reload.timeout since the first try.
+     */
+    private void executeStreamingReload(final Farm farm, final Map<String, String> jmsHeaders) {
+        if (lockerManager == null) {
+            lockerManager = new LockerManager();
+        }
+        final long since = reloadSinceOf(jmsHeaders);
+        if (!lockerManager.lock(farm.idName())) {
+            requeueReload(farm, since);
+            return;
+        }
+        LOGGER.warn("Full Reloading (streaming) farm " + farm.getName());
+        getDistMap().resetFarm(farm.getId());
+        final String[] apis = farm.getApi().split(",");
+        Arrays.stream(apis).forEach(api -> forget(farm, api));
+        final long leaseToken = lockerManager.tokenOf(farm.idName());
+        if (getStatusDist() == null) {
+            setStatusDist(new StatusDistributed());
+        }
+        final long start = currentTimeMillis();
+        getStatusDist().updateNewStatus(farm.idName(), true);
+        Arrays.stream(apis).forEach(api -> FixTracker.start(farm.getId(), api));
+        final EntityStatus status = getStatusConsolidated(farm, farm.getApi(), null, null, leaseToken, FixMode.FIX_IN_BULK);
+        getDistMap().put(farm, status.toString());
+        LOGGER.warn("Full Reload (streaming) of farm " + farm.getName() + " diffed with status " + status
+                + " (" + (currentTimeMillis() - start) + " ms). Fixes are tracked as for a sync.");
+    }
+
+    private long reloadSinceOf(final Map<String, String> jmsHeaders) {
+        final Object sinceHeader = jmsHeaders != null ? jmsHeaders.get(RELOAD_SINCE_PROP) : null;
+        try {
+            return sinceHeader != null ? Long.parseLong(sinceHeader.toString()) : currentTimeMillis();
+        } catch (NumberFormatException ignore) {
+            return currentTimeMillis();
+        }
+    }
+
+    private void requeueReload(final Farm farm, long since) {
+        if (currentTimeMillis() - since >= RELOAD_TIMEOUT) {
+            LOGGER.error(FARM_STATUS_MSG_PREFIX + "Farm " + farm.getName() + " still locked after "
+                    + RELOAD_TIMEOUT + " ms. Aborting reload.");
+            return;
+        }
+        LOGGER.info(FARM_STATUS_MSG_PREFIX + "Farm " + farm.getName() + " locked or not owned. Reload requeued in "
+                + RELOAD_RETRY_DELAY + " ms.");
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(RELOAD_SINCE_PROP, String.valueOf(since));
+        reloadRequeuer.schedule(() -> farmQueue().sendToOwner(FarmQueue.QUEUE_RELOAD, farm, properties,
+                "ID:farm-" + farm.getId() + "-reload-" + currentTimeMillis()), RELOAD_RETRY_DELAY, TimeUnit.MILLISECONDS);
     }
 
-    private Properties makeBaseProperty(String apiFarm, String id, String parentId, String entityType) {
+    private void removeEntitiesFromFarm(Driver driver, final List<Properties> removes, String api) {
+        if (removes.isEmpty()) {
+            return;
+        }
+        logWriteResults(driver.removeAll(removes), "remove(s)", api);
+    }
+
+    /**
+     * Writes queued for retry are settled later by the RetryQueue, so they are
+     * only reported as failed if the farm refused them or they were dropped.
+     */
+    private void logWriteResults(final List<WriteResult> writeResults, String writes, String api) {
+        final Map<WriteResult, Long> results = writeResults.stream()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        final long queued = results.getOrDefault(WriteResult.QUEUED, 0L);
+        final long failures = results.getOrDefault(WriteResult.FAILED, 0L);
+        if (queued > 0) {
+            LOGGER.info(FARM_STATUS_MSG_PREFIX + queued + " of " + writeResults.size() + " " + writes + " queued for retry [ " + api + " ]");
+        }
+        if (failures > 0) {
+            LOGGER.warn(FARM_STATUS_MSG_PREFIX + failures + " of " + writeResults.size() + " " + writes + " failed [ " + api + " ]");
+        }
+    }
+
+    private Properties makeBaseProperty(Farm farm, String apiFarm, String id, String parentId, String entityType, long leaseToken) {
         Properties properties = new Properties();
         properties.put(API_PROP, apiFarm);
+        properties.put(FARMID_PROP, String.valueOf(farm.getId()));
+        properties.put(LEASE_PROP, farm.idName());
+        properties.put(LEASE_TOKEN_PROP, String.valueOf(leaseToken));
         properties.put(JSON_PROP, "{\"id\":\"" + id + "\"" +
                 (parentId != null && !"".equals(parentId) ? ",\"parentId\":\"" + parentId + "\"" : "") +
                 ",\"version\":0}");
@@ -409,25 +1195,72 @@ public class FarmEngine extends AbstractEngine<Farm> {
     }
 
     private Map<String, List<?>> getEntitiesMap(Farm farm) {
+        final long farmId = farm.getId();
+        final Map<String, Future<List<LocalEntity>>> loads = new LinkedHashMap<>();
+        loads.put(VirtualHost.class.getSimpleName().toLowerCase(), loadAsSystemUser(() ->
+                LocalEntity.fromVirtualHostTuples(getVirtualHostRepository().findDiffTuplesByFarmId(farmId))));
+        loads.put(BackendPool.class.getSimpleName().toLowerCase(), loadAsSystemUser(() ->
+                LocalEntity.fromPoolTuples(getPoolRepository().findDiffTuplesByFarmId(farmId))));
+        loads.put(Backend.class.getSimpleName().toLowerCase(), loadAsSystemUser(() ->
+                LocalEntity.fromTargetTuples(getTargetRepository().findDiffTuplesByFarmId(farmId))));
+        loads.put(Rule.class.getSimpleName().toLowerCase(), loadAsSystemUser(() ->
+                LocalEntity.fromRuleTuples(getRuleRepository().findDiffTuplesByFarmId(farmId))));
+
         final Map<String, List<?>> entitiesMap = new HashMap<>();
-        Authentication currentUser = CurrentUser.getCurrentAuth();
-        SystemUserService.runAs();
-        entitiesMap.put(VirtualHost.class.getSimpleName().toLowerCase(),
-                getVirtualHostRepository().findByFarmId(farm.getId(), ALL_PAGES).getContent());
-        entitiesMap.put(BackendPool.class.getSimpleName().toLowerCase(),
-                getPoolRepository().findByFarmId(farm.getId(), ALL_PAGES).getContent());
-        entitiesMap.put(Backend.class.getSimpleName().toLowerCase(),
-                getTargetRepository().findByFarmId(farm.getId(), ALL_PAGES).getContent());
-        entitiesMap.put(Rule.class.getSimpleName().toLowerCase(),
-                getRuleRepository().findByFarmId(farm.getId(), ALL_PAGES).getContent());
-        SystemUserService.runAs(currentUser);
+        try {
+            for (Map.Entry<String, Future<List<LocalEntity>>> load : loads.entrySet()) {
+                entitiesMap.put(load.getKey(), load.getValue().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            loads.values().forEach(load -> load.cancel(true));
+        }
         return entitiesMap;
     }
 
+    private Future<List<LocalEntity>> loadAsSystemUser(final Callable<List<LocalEntity>> query) {
+        return apiExecutor.submit(() -> {
+            SystemUserService.runAs();
+            try {
+                return query.call();
+            } finally {
+                SystemUserService.clearContext();
+            }
+        });
+    }
+
     public DistMap getDistMap() {
         return distMap;
     }
 
+    @Autowired
+    public FarmEngine setPoolEngine(final PoolEngine poolEngine) {
+        entityEngines.put("pool", poolEngine);
+        return this;
+    }
+
+    @Autowired
+    public FarmEngine setTargetEngine(final TargetEngine targetEngine) {
+        entityEngines.put("target", targetEngine);
+        return this;
+    }
+
+    @Autowired
+    public FarmEngine setVirtualHostEngine(final VirtualHostEngine virtualHostEngine) {
+        entityEngines.put("virtualhost", virtualHostEngine);
+        return this;
+    }
+
+    @Autowired
+    public FarmEngine setRuleEngine(final RuleEngine ruleEngine) {
+        entityEngines.put("rule", ruleEngine);
+        return this;
+    }
+
     @Autowired
     public FarmEngine setDistMap(final DistMap distMap) {
         this.distMap = distMap;
@@ -494,6 +1327,39 @@ public class FarmEngine extends AbstractEngine<Farm> {
         return this;
     }
 
+    public SyncJournal getSyncJournal() {
+        return syncJournal;
+    }
+
+    @Autowired
+    public FarmEngine setSyncJournal(final SyncJournal syncJournal) {
+        this.syncJournal = syncJournal;
+        return this;
+    }
+
+    public SyncInterval getSyncInterval() {
+        if (syncInterval == null) {
+            syncInterval = new SyncInterval();
+        }
+        return syncInterval;
+    }
+
+    @Autowired
+    public FarmEngine setSyncInterval(final SyncInterval syncInterval) {
+        this.syncInterval = syncInterval;
+        return this;
+    }
+
+    public FarmShards getFarmShards() {
+        return farmShards;
+    }
+
+    @Autowired
+    public FarmEngine setFarmShards(final FarmShards farmShards) {
+        this.farmShards = farmShards;
+        return this;
+    }
+
     public QueueLocator getQueueLocator() {
         return queueLocator;
     }
@@ -0,0 +1,102 @@
+/*
+ * Galeb - Load Balance as a Service Plataform
+ *
+ * Copyright (C) 2014-2016 Globo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ */
+
+package io.galeb.manager.engine.listeners;
+
+import io.galeb.manager.engine.service.FarmShards;
+import io.galeb.manager.entity.Farm;
+import io.galeb.manager.queue.FarmQueue;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jms.annotation.JmsListenerConfigurer;
+import org.springframework.jms.config.JmsListenerEndpointRegistrar;
+import org.springframework.jms.config.SimpleJmsListenerEndpoint;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.ObjectMessage;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Listens to the farm queues that must be handled by the node owning the farm
+ * (see FarmShards). Each node only selects the messages tagged with its own node
+ * id, or untagged ones, so a sync or a reload goes straight to its owner instead of bouncing
+ * between nodes. A message still reaching a node that no longer owns the farm
+ * (topology change) is forwarded by FarmEngine.
+ */
+@Configuration
+public class FarmOwnerListeners implements JmsListenerConfigurer {
+
+    private static final Log LOGGER = LogFactory.getLog(FarmOwnerListeners.class);
+
+    @Autowired private FarmEngine farmEngine;
+    @Autowired private FarmShards farmShards;
+
+    @Override
+    public void configureListeners(JmsListenerEndpointRegistrar registrar) {
+        final String localNode = farmShards.localNode();
+        final String selector = localNode != null ?
+                FarmQueue.OWNER_NODE_PROP + " IS NULL OR " + FarmQueue.OWNER_NODE_PROP + " = '" + localNode + "'" : null;
+        LOGGER.info("Farm owner listeners selecting " + (selector != null ? selector : "every message"));
+        registrar.registerEndpoint(endpointOf(FarmQueue.QUEUE_SYNC, selector, farmEngine::sync));
+        registrar.registerEndpoint(endpointOf(FarmQueue.QUEUE_RELOAD, selector, farmEngine::reload));
+    }
+
+    private SimpleJmsListenerEndpoint endpointOf(String queue, String selector, final BiConsumer<Farm, Map<String, String>> handler) {
+        final SimpleJmsListenerEndpoint endpoint = new SimpleJmsListenerEndpoint();
+        endpoint.setId(queue + "-owner");
+        endpoint.setDestination(queue);
+        if (selector != null) {
+            endpoint.setSelector(selector);
+        }
+        endpoint.setMessageListener(message -> {
+            try {
+                final Object body = message instanceof ObjectMessage ? ((ObjectMessage) message).getObject() : null;
+                if (body instanceof Farm) {
+                    handler.accept((Farm) body, headersOf(message));
+                } else {
+                    LOGGER.error("Unexpected message on " + queue + ": " + message);
+                }
+            } catch (JMSException e) {
+                LOGGER.error(ExceptionUtils.getStackTrace(e));
+            }
+        });
+        return endpoint;
+    }
+
+    private Map<String, String> headersOf(final Message message) throws JMSException {
+        final Map<String, String> headers = new HashMap<>();
+        final Enumeration<?> names = message.getPropertyNames();
+        while (names.hasMoreElements()) {
+            final String name = String.valueOf(names.nextElement());
+            final Object value = message.getObjectProperty(name);
+            if (value != null) {
+                headers.put(name, value.toString());
+            }
+        }
+        return headers;
+    }
+}
@@ -39,6 +39,8 @@ import org.springframework.jms.annotation.JmsListener;
 import org.springframework.messaging.handler.annotation.Headers;
 import org.springframework.stereotype.Component;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 @Component
@@ -98,6 +100,11 @@ public class PoolEngine extends AbstractEngine<Pool> {
         return (FarmQueue) getQueueLocator().getQueue(Farm.class);
     }
 
+    @Override
+    public List<Properties> makeFixProperties(Pool pool, String parentId, final Map<String, String> jmsHeaders) {
+        return Collections.singletonList(makeProperties(pool, jmsHeaders));
+    }
+
     public Properties makeProperties(Pool pool, Map<String, String> jmsHeaders) {
         String json = "{}";
         try {
@@ -43,8 +43,12 @@ import io.galeb.manager.common.Properties;
 import io.galeb.manager.engine.driver.Driver;
 import io.galeb.manager.repository.FarmRepository;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @Component
 public class RuleEngine extends AbstractEngine<Rule> {
@@ -65,21 +69,23 @@ public class RuleEngine extends AbstractEngine<Rule> {
         LOGGER.info("Creating "+rule.getClass().getSimpleName()+" "+rule.getName());
         final Driver driver = getDriver(rule);
         String parentId = jmsHeaders.get(AbstractEngine.PARENTID_PROP);
+        final List<CompletableFuture<Boolean>> inFlight = new ArrayList<>();
         rule.getParents().stream()
                 .filter(virtualhost -> parentId == null || virtualhost.getName().equals(parentId))
                 .forEach(virtualhost -> {
                     try {
                         updateRuleSpecialProperties(rule, virtualhost);
-                        driver.create(makeProperties(rule, virtualhost, jmsHeaders));
+                        inFlight.add(driver.createAsync(makeProperties(rule, virtualhost, jmsHeaders)));
                         virtualhost.getAliases().forEach(virtualHostName -> {
                             VirtualHost virtualHostAlias = virtualHostAliasBuilder
                                     .buildVirtualHostAlias(virtualHostName, virtualhost);
-                            driver.create(makeProperties(rule, virtualHostAlias, jmsHeaders));
+                            inFlight.add(driver.createAsync(makeProperties(rule, virtualHostAlias, jmsHeaders)));
                         });
                     } catch (Exception e) {
                         LOGGER.error(ExceptionUtils.getStackTrace(e));
                     }
         });
+        awaitAll(inFlight);
     }
 
     @JmsListener(destination = RuleQueue.QUEUE_UPDATE)
@@ -87,25 +93,36 @@ public class RuleEngine extends AbstractEngine<Rule> {
         LOGGER.info("Updating "+rule.getClass().getSimpleName()+" "+rule.getName());
         final Driver driver = getDriver(rule);
         String parentId = jmsHeaders.get(AbstractEngine.PARENTID_PROP);
+        final List<CompletableFuture<Boolean>> inFlight = new ArrayList<>();
         rule.getParents().stream()
                 .filter(virtualhost -> parentId == null || virtualhost.getName().equals(parentId))
                 .forEach(virtualhost -> {
                     try {
                         updateRuleSpecialProperties(rule, virtualhost);
-                        if (!driver.exist(makeProperties(rule, virtualhost, jmsHeaders))) {
-                            ruleQueue().sendToQueue(RuleQueue.QUEUE_CREATE, rule);
-                            return;
-                        }
-                        driver.update(makeProperties(rule, virtualhost, jmsHeaders));
-                        virtualhost.getAliases().forEach(virtualHostName -> {
-                            VirtualHost virtualHostAlias = virtualHostAliasBuilder
-                                    .buildVirtualHostAlias(virtualHostName, virtualhost);
-                            driver.update(makeProperties(rule, virtualHostAlias, jmsHeaders));
-                        });
+                        final Properties properties = makeProperties(rule, virtualhost, jmsHeaders);
+                        final List<Properties> aliasesProperties = virtualhost.getAliases().stream()
+                                .map(virtualHostName -> virtualHostAliasBuilder
+                                        .buildVirtualHostAlias(virtualHostName, virtualhost))
+                                .map(virtualHostAlias -> makeProperties(rule, virtualHostAlias, jmsHeaders))
+                                .collect(Collectors.toList());
+                        inFlight.add(driver.existAsync(properties).thenCompose(exist -> {
+                            if (!exist) {
+                                return CompletableFuture.completedFuture(false);
+                            }
+                            final List<CompletableFuture<Boolean>> updates = new ArrayList<>();
+                            updates.add(driver.updateAsync(properties));
+                            aliasesProperties.forEach(aliasProperties -> updates.add(driver.updateAsync(aliasProperties)));
+                            return CompletableFuture.allOf(updates.toArray(new CompletableFuture<?>[updates.size()]))
+                                    .thenApply(done -> true);
+                        }));
                     } catch (Exception e) {
                         LOGGER.error(ExceptionUtils.getStackTrace(e));
                     }
                 });
+        awaitAll(inFlight);
+        if (inFlight.stream().anyMatch(updated -> !updated.isCompletedExceptionally() && !updated.join())) {
+            ruleQueue().sendToQueue(RuleQueue.QUEUE_CREATE, rule);
+        }
     }
 
     @Override
@@ -117,18 +134,20 @@ public class RuleEngine extends AbstractEngine<Rule> {
     public void remove(Rule rule, @Headers final Map<String, String> jmsHeaders) {
         LOGGER.info("Removing " + rule.getClass().getSimpleName() + " " + rule.getName());
         final Driver driver = getDriver(rule);
+        final List<CompletableFuture<Boolean>> inFlight = new ArrayList<>();
         rule.getParents().forEach(virtualhost -> {
             try {
-                driver.remove(makeProperties(rule, virtualhost, jmsHeaders));
+                inFlight.add(driver.removeAsync(makeProperties(rule, virtualhost, jmsHeaders)));
                 virtualhost.getAliases().forEach(virtualHostName -> {
                     VirtualHost virtualHostAlias = getVirtualHostAliasBuilder()
                             .buildVirtualHostAlias(virtualHostName, virtualhost);
-                    driver.remove(makeProperties(rule, virtualHostAlias, jmsHeaders));
+                    inFlight.add(driver.removeAsync(makeProperties(rule, virtualHostAlias, jmsHeaders)));
                 });
             } catch (Exception e) {
                 LOGGER.error(ExceptionUtils.getStackTrace(e));
             }
         });
+        awaitAll(inFlight);
     }
 
     @Override
@@ -146,6 +165,22 @@ public class RuleEngine extends AbstractEngine<Rule> {
         }
     }
 
+    @Override
+    public List<Properties> makeFixProperties(Rule rule, String parentId, final Map<String, String> jmsHeaders) {
+        final List<Properties> writes = new ArrayList<>();
+        final Map<String, String> aliasHeaders = aliasHeaders(jmsHeaders);
+        rule.getParents().stream()
+                .filter(virtualhost -> virtualhost.getName().equals(parentId))
+                .findAny()
+                .ifPresent(virtualhost -> {
+                    updateRuleSpecialProperties(rule, virtualhost);
+                    writes.add(makeProperties(rule, virtualhost, jmsHeaders));
+                    virtualhost.getAliases().forEach(virtualHostName -> writes.add(makeProperties(rule,
+                            virtualHostAliasBuilder.buildVirtualHostAlias(virtualHostName, virtualhost), aliasHeaders)));
+                });
+        return writes;
+    }
+
     public Properties makeProperties(Rule rule, VirtualHost virtualHost, final Map<String, String> jmsHeaders) {
         String json = "{}";
         try {
@@ -40,6 +40,8 @@ import org.springframework.stereotype.Component;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 @Component
@@ -102,6 +104,11 @@ public class TargetEngine extends AbstractEngine<Target> {
         return (FarmQueue) getQueueLocator().getQueue(Farm.class);
     }
 
+    @Override
+    public List<Properties> makeFixProperties(Target target, String parentId, final Map<String, String> jmsHeaders) {
+        return Collections.singletonList(makeProperties(target, target.getParent(), jmsHeaders));
+    }
+
     public Properties makeProperties(Target target, Pool pool, final Map<String, String> jmsHeaders) {
         String json = "{}";
         try {
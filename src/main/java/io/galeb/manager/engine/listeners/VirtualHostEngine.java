@@ -48,11 +48,15 @@ import io.galeb.manager.engine.driver.Driver;
 import io.galeb.manager.security.user.CurrentUser;
 import io.galeb.manager.security.services.SystemUserService;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Component
@@ -77,12 +81,15 @@ public class VirtualHostEngine extends AbstractEngine<VirtualHost> {
         LOGGER.info("Creating " + virtualHost.getClass().getSimpleName() + " " + virtualHost.getName());
         final Driver driver = getDriver(virtualHost);
         try {
-            driver.create(makeProperties(virtualHost, jmsHeaders));
-            virtualHost.getAliases().forEach(virtualHostName -> {
-                VirtualHost virtualHostAlias = getVirtualHostAliasBuilder()
-                        .buildVirtualHostAlias(virtualHostName, virtualHost);
-                create(virtualHostAlias, jmsHeaders);
+            final List<CompletableFuture<Boolean>> inFlight = new ArrayList<>();
+            inFlight.add(driver.createAsync(makeProperties(virtualHost, jmsHeaders)));
+            final List<VirtualHost> aliases = buildAliases(virtualHost);
+            aliases.forEach(virtualHostAlias -> {
+                LOGGER.info("Creating " + virtualHostAlias.getClass().getSimpleName() + " " + virtualHostAlias.getName());
+                inFlight.add(getDriver(virtualHostAlias).createAsync(makeProperties(virtualHostAlias, jmsHeaders)));
             });
+            awaitAll(inFlight);
+            aliases.forEach(virtualHostAlias -> createRules(virtualHostAlias, jmsHeaders));
             createRules(virtualHost, jmsHeaders);
         } catch (Exception e) {
             LOGGER.error(ExceptionUtils.getStackTrace(e));
@@ -94,14 +101,23 @@ public class VirtualHostEngine extends AbstractEngine<VirtualHost> {
         LOGGER.info("Updating " + virtualHost.getClass().getSimpleName() + " " + virtualHost.getName());
         final Driver driver = getDriver(virtualHost);
         try {
-            driver.update(makeProperties(virtualHost, jmsHeaders));
-            virtualHost.getAliases().forEach(virtualHostName -> {
-                VirtualHost virtualHostAlias = getVirtualHostAliasBuilder()
-                        .buildVirtualHostAlias(virtualHostName, virtualHost);
-                if (!driver.exist(makeProperties(virtualHostAlias, jmsHeaders))) {
-                    create(virtualHostAlias, jmsHeaders);
+            final List<CompletableFuture<Boolean>> inFlight = new ArrayList<>();
+            inFlight.add(driver.updateAsync(makeProperties(virtualHost, jmsHeaders)));
+            final Map<VirtualHost, CompletableFuture<Boolean>> aliasesExist = new LinkedHashMap<>();
+            buildAliases(virtualHost).forEach(virtualHostAlias -> {
+                final Properties aliasProperties = makeProperties(virtualHostAlias, jmsHeaders);
+                final Driver aliasDriver = getDriver(virtualHostAlias);
+                final CompletableFuture<Boolean> exist = aliasDriver.existAsync(aliasProperties);
+                aliasesExist.put(virtualHostAlias, exist);
+                inFlight.add(exist.thenCompose(aliasExist -> aliasExist ?
+                        aliasDriver.updateAsync(aliasProperties) : aliasDriver.createAsync(aliasProperties)));
+            });
+            awaitAll(inFlight);
+            aliasesExist.forEach((virtualHostAlias, exist) -> {
+                if (exist.getNow(false)) {
+                    updateRules(virtualHostAlias, jmsHeaders);
                 } else {
-                    update(virtualHostAlias, jmsHeaders);
+                    createRules(virtualHostAlias, jmsHeaders);
                 }
             });
             updateRules(virtualHost, jmsHeaders);
@@ -120,12 +136,13 @@ public class VirtualHostEngine extends AbstractEngine<VirtualHost> {
         LOGGER.info("Removing " + virtualHost.getClass().getSimpleName() + " " + virtualHost.getName());
         final Driver driver = getDriver(virtualHost);
         try {
-            driver.remove(makeProperties(virtualHost, jmsHeaders));
-            virtualHost.getAliases().forEach(virtualHostName -> {
-                VirtualHost virtualHostAlias = getVirtualHostAliasBuilder()
-                        .buildVirtualHostAlias(virtualHostName, virtualHost);
-                remove(virtualHostAlias, jmsHeaders);
+            final List<CompletableFuture<Boolean>> inFlight = new ArrayList<>();
+            inFlight.add(driver.removeAsync(makeProperties(virtualHost, jmsHeaders)));
+            buildAliases(virtualHost).forEach(virtualHostAlias -> {
+                LOGGER.info("Removing " + virtualHostAlias.getClass().getSimpleName() + " " + virtualHostAlias.getName());
+                inFlight.add(getDriver(virtualHostAlias).removeAsync(makeProperties(virtualHostAlias, jmsHeaders)));
             });
+            awaitAll(inFlight);
         } catch (Exception e) {
             LOGGER.error(ExceptionUtils.getStackTrace(e));
         }
@@ -136,6 +153,18 @@ public class VirtualHostEngine extends AbstractEngine<VirtualHost> {
         return (FarmQueue) getQueueLocator().getQueue(Farm.class);
     }
 
+    /**
+     * Rules aren't included: they are diffed, and fixed, on their own.
+     */
+    @Override
+    public List<Properties> makeFixProperties(VirtualHost virtualHost, String parentId, final Map<String, String> jmsHeaders) {
+        final List<Properties> writes = new ArrayList<>();
+        writes.add(makeProperties(virtualHost, jmsHeaders));
+        final Map<String, String> aliasHeaders = aliasHeaders(jmsHeaders);
+        buildAliases(virtualHost).forEach(virtualHostAlias -> writes.add(makeProperties(virtualHostAlias, aliasHeaders)));
+        return writes;
+    }
+
     public Properties makeProperties(VirtualHost virtualHost, final Map<String, String> jmsHeaderProperties) {
         String json = "{}";
         try {
@@ -150,6 +179,12 @@ public class VirtualHostEngine extends AbstractEngine<VirtualHost> {
         return properties;
     }
 
+    private List<VirtualHost> buildAliases(VirtualHost virtualHost) {
+        return virtualHost.getAliases().stream()
+                .map(virtualHostName -> getVirtualHostAliasBuilder().buildVirtualHostAlias(virtualHostName, virtualHost))
+                .collect(Collectors.toList());
+    }
+
     private void updateRules(VirtualHost virtualHost, Map<String, String> jmsHeaders) {
         String ruleQueue = RuleQueue.QUEUE_UPDATE;
         sendRuleToQueue(virtualHost, jmsHeaders, ruleQueue);
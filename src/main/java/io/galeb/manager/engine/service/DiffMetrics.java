@@ -0,0 +1,48 @@
+/*
+ *   Galeb - Load Balance as a Service Plataform
+ *
+ *   Copyright (C) 2014-2016 Globo.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.galeb.manager.engine.service;
+
+import io.galeb.manager.engine.util.SyncFingerprint;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publishes how many full diffs were skipped by {@link SyncFingerprint} under galeb.sync.diff.*
+ */
+@Component
+public class DiffMetrics implements PublicMetrics {
+
+    private static final String METRIC_PREFIX = "galeb.sync.diff.";
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final long skipped = SyncFingerprint.skipped();
+        final long diffed = SyncFingerprint.diffed();
+        final List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "skipped", skipped));
+        metrics.add(new Metric<>(METRIC_PREFIX + "computed", diffed));
+        metrics.add(new Metric<>(METRIC_PREFIX + "skipRate", skipped + diffed > 0 ? (double) skipped / (skipped + diffed) : 0.0));
+        return metrics;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *   Galeb - Load Balance as a Service Plataform
+ *
+ *   Copyright (C) 2014-2016 Globo.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.galeb.manager.engine.service;
+
+import io.galeb.core.cluster.ignite.IgniteCacheFactory;
+import io.galeb.manager.engine.util.SyncExecutors;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCluster;
+import org.apache.ignite.cluster.ClusterNode;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Assigns each farm to one manager node with a consistent hash ring over the
+ * Ignite server nodes, rebuilt whenever the topology version changes, so only
+ * ~1/n of the farms move when a node joins or leaves. The farm lock is kept as
+ * a safety net while nodes disagree during a topology change.
+ */
+@Service
+public class FarmShards {
+
+    private static final Log LOGGER = LogFactory.getLog(FarmShards.class);
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("io.galeb.sync.sharding", "true"));
+    private static final int VIRTUAL_NODES = SyncExecutors.threadsFromProperty("io.galeb.sync.sharding.vnodes", 64);
+
+    private volatile Ring ring = null;
+
+    /**
+     * True if this node should sync the farm: sharding disabled, the cluster not
+     * reachable or this node not a server member all fall back to every node
+     * competing for the farm lock, as before.
+     */
+    public boolean isLocal(long farmId) {
+        if (!ENABLED) {
+            return true;
+        }
+        final Ring current = currentRing();
+        return current == null || !current.hasMember(current.localNodeId)
+                || current.localNodeId.equals(current.ownerOf(farmId));
+    }
+
+    /**
+     * @return the id of the node that should sync the farm, or null when any node
+     * may (sharding disabled or the cluster not reachable)
+     */
+    public String ownerOf(long farmId) {
+        if (!ENABLED) {
+            return null;
+        }
+        final Ring current = currentRing();
+        return current == null || current.memberIds.isEmpty() ? null : current.ownerOf(farmId).toString();
+    }
+
+    /**
+     * @return the id of this node in the ring, or null if farms aren't sharded to it
+     */
+    public String localNode() {
+        if (!ENABLED) {
+            return null;
+        }
+        final Ring current = currentRing();
+        return current == null || !current.hasMember(current.localNodeId) ? null : current.localNodeId.toString();
+    }
+
+    private Ring currentRing() {
+        try {
+            final IgniteCluster cluster = ((Ignite) IgniteCacheFactory.getInstance().getClusterInstance()).cluster();
+            final long topologyVersion = cluster.topologyVersion();
+            Ring current = ring;
+            if (current == null || current.topologyVersion != topologyVersion) {
+                final Collection<ClusterNode> members = cluster.forServers().nodes();
+                current = new Ring(topologyVersion, cluster.localNode().id(), members);
+                ring = current;
+                LOGGER.info("Farm shards recomputed (topology version " + topologyVersion + ", "
+                        + members.size() + " node(s))");
+            }
+            return current;
+        } catch (Exception e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            return null;
+        }
+    }
+
+    private static long hash(String value) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+            long hash = 0L;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            return value.hashCode();
+        }
+    }
+
+    private static class Ring {
+
+        private final long topologyVersion;
+        private final UUID localNodeId;
+        private final TreeMap<Long, UUID> points = new TreeMap<>();
+        private final Set<UUID> memberIds = new HashSet<>();
+
+        Ring(long topologyVersion, UUID localNodeId, final Collection<ClusterNode> members) {
+            this.topologyVersion = topologyVersion;
+            this.localNodeId = localNodeId;
+            members.forEach(member -> {
+                memberIds.add(member.id());
+                for (int i = 0; i < VIRTUAL_NODES; i++) {
+                    points.put(hash(member.id() + "#" + i), member.id());
+                }
+            });
+        }
+
+        boolean hasMember(UUID nodeId) {
+            return memberIds.contains(nodeId);
+        }
+
+        UUID ownerOf(long farmId) {
+            if (points.isEmpty()) {
+                return localNodeId;
+            }
+            final Map.Entry<Long, UUID> point = points.ceilingEntry(hash("farm" + farmId));
+            return point != null ? point.getValue() : points.firstEntry().getValue();
+        }
+    }
+}
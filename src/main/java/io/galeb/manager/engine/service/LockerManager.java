@@ -20,31 +20,186 @@ package io.galeb.manager.engine.service;
 
 import io.galeb.core.cluster.ClusterLocker;
 import io.galeb.core.cluster.ignite.IgniteClusterLocker;
-import io.galeb.manager.engine.util.CounterDownLatch;
+import io.galeb.manager.cache.DistMap;
+import io.galeb.manager.engine.util.FixTracker;
+import io.galeb.manager.entity.Farm;
 
+import javax.cache.Cache;
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Farm locks are time-bound leases kept in the DistMap and changed only with
+ * compare-and-set, so a lease can't be stolen while its holder keeps renewing
+ * it. Each acquisition increments the fencing token of the lock; work started
+ * under an older token must check {@link #isValid} (or {@link #renew}) before
+ * touching the farm.
+ */
 public class LockerManager implements Serializable {
 
+    public static final long NO_TOKEN = -1L;
+
+    private static final String LEASE_CACHE = "FarmLease";
+    private static final long LEASE_TTL = Long.parseLong(System.getProperty("io.galeb.sync.lease.ttl", "30000"));
+
+    private static final ConcurrentMap<String, Long> HELD_TOKENS = new ConcurrentHashMap<>();
+
     private ClusterLocker locker = IgniteClusterLocker.getInstance().start();
 
+    public boolean lock(String lockId) {
+        final Cache<String, String> leases = leases();
+        final long now = currentTimeMillis();
+        final String current = leases.get(lockId);
+        final Lease previous = Lease.parse(current);
+        if (previous != null && previous.isActive(now)) {
+            return false;
+        }
+        final Lease lease = new Lease(name(), previous != null ? previous.token + 1 : 1L, now + LEASE_TTL);
+        final boolean acquired = current == null ?
+                leases.putIfAbsent(lockId, lease.toString()) : leases.replace(lockId, current, lease.toString());
+        if (acquired) {
+            HELD_TOKENS.put(lockId, lease.token);
+        }
+        return acquired;
+    }
+
+    public long tokenOf(String lockId) {
+        return HELD_TOKENS.getOrDefault(lockId, NO_TOKEN);
+    }
+
+    /**
+     * Extends the lease if this node still holds it under the given token.
+     *
+     * @return false if the lease was lost: the work done under this token must stop
+     */
+    public boolean renew(String lockId, long token) {
+        final Cache<String, String> leases = leases();
+        final String current = leases.get(lockId);
+        final Lease lease = Lease.parse(current);
+        if (lease == null || lease.token != token || !name().equals(lease.holder)) {
+            HELD_TOKENS.remove(lockId, token);
+            return false;
+        }
+        final boolean renewed = leases.replace(lockId, current,
+                new Lease(lease.holder, token, currentTimeMillis() + LEASE_TTL).toString());
+        if (!renewed) {
+            HELD_TOKENS.remove(lockId, token);
+        }
+        return renewed;
+    }
+
+    public boolean renew(String lockId) {
+        return renew(lockId, tokenOf(lockId));
+    }
+
+    public boolean isValid(String lockId, long token) {
+        final Lease lease = Lease.parse(leases().get(lockId));
+        return lease != null && lease.token == token && name().equals(lease.holder)
+                && lease.isActive(currentTimeMillis());
+    }
+
+    /**
+     * Fencing check for work carrying a token, wherever it runs: fixes are
+     * applied by any node, not only by the lease holder.
+     *
+     * @return true if the lease is still active under the given token
+     */
+    public static boolean isCurrent(String lockId, long token) {
+        final Lease lease = Lease.parse(leases().get(lockId));
+        return lease != null && lease.token == token && lease.isActive(currentTimeMillis());
+    }
+
     public void release(String lockId) {
-        locker.release(lockId);
+        final Long token = HELD_TOKENS.remove(lockId);
+        final Cache<String, String> leases = leases();
+        final String current = leases.get(lockId);
+        final Lease lease = Lease.parse(current);
+        if (token != null && lease != null && lease.token == token && name().equals(lease.holder)) {
+            leases.replace(lockId, current, Lease.released(token).toString());
+        }
     }
 
-    public void release(String lockId, final String[] apis) {
-        release(lockId);
-        Arrays.stream(apis).forEach(CounterDownLatch::remove);
+    public void release(Farm farm, final String[] apis) {
+        release(farm.idName());
+        Arrays.stream(apis).forEach(api -> FixTracker.remove(farm.getId(), api));
     }
 
-    public boolean lock(String lockId) {
-        return locker.lock(lockId);
+    /**
+     * Releases the lease whoever holds it (admin unlock). The token is kept, so
+     * the next holder still gets a newer one and the old holder is fenced off.
+     */
+    public void forceRelease(Farm farm, final String[] apis) {
+        final String lockId = farm.idName();
+        final Cache<String, String> leases = leases();
+        final Lease lease = Lease.parse(leases.get(lockId));
+        if (lease != null) {
+            leases.put(lockId, Lease.released(lease.token).toString());
+        }
+        HELD_TOKENS.remove(lockId);
+        Arrays.stream(apis).forEach(api -> FixTracker.remove(farm.getId(), api));
+    }
+
+    public Boolean contains(String lockId) {
+        final long token = tokenOf(lockId);
+        return token != NO_TOKEN && isValid(lockId, token);
     }
 
-    public Boolean contains(String lockId) { return locker.contains(lockId); }
+    public long leaseTtl() {
+        return LEASE_TTL;
+    }
 
     public String name() {
         return locker.name();
     }
+
+    private static Cache<String, String> leases() {
+        return DistMap.getInstance().getAll(LEASE_CACHE);
+    }
+
+    private static class Lease {
+
+        private static final String SEP = "|";
+
+        private final String holder;
+        private final long token;
+        private final long expiresAt;
+
+        Lease(String holder, long token, long expiresAt) {
+            this.holder = holder;
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+
+        static Lease released(long token) {
+            return new Lease("", token, 0L);
+        }
+
+        static Lease parse(String value) {
+            if (value == null) {
+                return null;
+            }
+            final int last = value.lastIndexOf(SEP);
+            final int middle = value.lastIndexOf(SEP, last - 1);
+            try {
+                return new Lease(value.substring(0, middle),
+                                 Long.parseLong(value.substring(middle + 1, last)),
+                                 Long.parseLong(value.substring(last + 1)));
+            } catch (RuntimeException e) {
+                return released(0L);
+            }
+        }
+
+        boolean isActive(long now) {
+            return !holder.isEmpty() && expiresAt > now;
+        }
+
+        @Override
+        public String toString() {
+            return holder + SEP + token + SEP + expiresAt;
+        }
+    }
 }
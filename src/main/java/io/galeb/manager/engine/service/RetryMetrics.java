@@ -0,0 +1,53 @@
+/*
+ *   Galeb - Load Balance as a Service Plataform
+ *
+ *   Copyright (C) 2014-2016 Globo.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.galeb.manager.engine.service;
+
+import io.galeb.manager.engine.util.RetryQueue;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publishes the {@link RetryQueue} counters under galeb.retry.*
+ */
+@Component
+public class RetryMetrics implements PublicMetrics {
+
+    private static final String METRIC_PREFIX = "galeb.retry.";
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "pending", RetryQueue.pending()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "attempts", RetryQueue.attempts()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "succeeded", RetryQueue.succeeded()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "exhausted", RetryQueue.exhausted()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "superseded", RetryQueue.superseded()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "dropped", RetryQueue.dropped()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "cancelled", RetryQueue.cancelled()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "deferred", RetryQueue.deferred()));
+        RetryQueue.pendingByFarm().forEach((farmId, pending) ->
+                metrics.add(new Metric<>(METRIC_PREFIX + "pending.farm" + farmId, pending)));
+        return metrics;
+    }
+}
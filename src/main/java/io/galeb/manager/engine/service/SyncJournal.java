@@ -0,0 +1,123 @@
+/*
+ *   Galeb - Load Balance as a Service Plataform
+ *
+ *   Copyright (C) 2014-2016 Globo.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.galeb.manager.engine.service;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static io.galeb.manager.entity.AbstractEntitySyncronizable.PREFIX_SYNC_JOURNAL;
+
+/**
+ * Farm-scoped change journal, written by the handlers next to the haschange keys
+ * (which are env-scoped and expired by the routers' etag polling) and consumed
+ * by the incremental sync. Members are "managerEntityType:name".
+ */
+@Service
+public class SyncJournal {
+
+    private static final Log LOGGER = LogFactory.getLog(SyncJournal.class);
+
+    public static final String SEP = ":";
+
+    private static final long DRAINING_TTL = Long.parseLong(System.getProperty("io.galeb.sync.journal.drainingTtl", "86400000"));
+
+    @Autowired
+    private StringRedisTemplate template;
+
+    public static String keyOf(long farmId) {
+        return PREFIX_SYNC_JOURNAL + SEP + farmId;
+    }
+
+    public static String memberOf(String managerEntityType, String name) {
+        return managerEntityType + SEP + name;
+    }
+
+    public boolean hasChanges(long farmId) {
+        try {
+            return template.hasKey(keyOf(farmId));
+        } catch (Exception e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            return true;
+        }
+    }
+
+    /**
+     * Atomically takes every pending change of the farm. A concurrent writer
+     * either lands before the rename (and is drained now) or after it (and is
+     * left for the next tick). If reading the renamed key fails, its changes are
+     * merged back into the journal, so they are drained on the next tick instead
+     * of being left behind under the renamed key.
+     */
+    public Set<String> drain(long farmId) {
+        final String key = keyOf(farmId);
+        final String draining = key + SEP + UUID.randomUUID().toString();
+        boolean renamed = false;
+        try {
+            if (!template.hasKey(key)) {
+                return Collections.emptySet();
+            }
+            template.rename(key, draining);
+            renamed = true;
+            final Set<String> changes = template.opsForSet().members(draining);
+            template.delete(draining);
+            return changes != null ? changes : Collections.emptySet();
+        } catch (Exception e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+            if (renamed) {
+                putBack(key, draining);
+            }
+            return Collections.emptySet();
+        }
+    }
+
+    private void putBack(String key, String draining) {
+        try {
+            template.opsForSet().unionAndStore(key, draining, key);
+            template.delete(draining);
+        } catch (Exception e) {
+            LOGGER.error("Changes left in " + draining + ": " + ExceptionUtils.getStackTrace(e));
+            try {
+                template.expire(draining, DRAINING_TTL, TimeUnit.MILLISECONDS);
+            } catch (Exception ignore) {
+                // redis unreachable
+            }
+        }
+    }
+
+    public void restore(long farmId, final Collection<String> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        try {
+            template.opsForSet().add(keyOf(farmId), changes.toArray(new String[changes.size()]));
+        } catch (Exception e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+}
@@ -21,40 +21,44 @@
 package io.galeb.manager.engine.util;
 
 import io.galeb.manager.common.Properties;
+import io.galeb.manager.engine.driver.DiffEntry;
+import io.galeb.manager.engine.driver.EntityKey;
+import io.galeb.manager.engine.driver.RemoteEntity;
 import io.galeb.manager.entity.AbstractEntity;
-import io.galeb.manager.entity.WithAliases;
-import io.galeb.manager.entity.WithParent;
-import io.galeb.manager.entity.WithParents;
 import io.galeb.manager.repository.PoolRepository;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static io.galeb.manager.engine.driver.Driver.ActionOnDiff.UPDATE;
 import static io.galeb.manager.engine.driver.Driver.ActionOnDiff.CREATE;
 import static io.galeb.manager.engine.driver.Driver.ActionOnDiff.REMOVE;
 
-import static io.galeb.manager.engine.listeners.AbstractEngine.*;
 import static java.util.stream.Collectors.toList;
 
 public class DiffProcessor {
 
     private static final Log LOGGER = LogFactory.getLog(DiffProcessor.class);
 
+    private static final int DIFF_THREADS = SyncExecutors.threadsFromProperty("io.galeb.diff.threads",
+            Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    private static final ExecutorService DIFF_EXECUTOR =
+            SyncExecutors.newFixedDaemonPool("diff-processor-", DIFF_THREADS);
+
     private Properties properties;
-    private String api = "";
-    private final Map<String, Map<String, Object>> diffMap = new HashMap<>();
+    private final Map<EntityKey, DiffEntry> diffMap = new LinkedHashMap<>();
     private Map<String, List<?>> entitiesMap = new HashMap<>();
 
     public DiffProcessor setProperties(Properties properties) {
@@ -62,28 +66,30 @@ public class DiffProcessor {
         return this;
     }
 
-    public Map<String, Map<String, Object>> getDiffMap(Map<String, Map<String, Map<String, String>>> remoteMultiMap)
+    public List<DiffEntry> getDiffMap(Map<String, Map<EntityKey, RemoteEntity>> remoteMultiMap)
             throws Exception {
-        final AtomicReference<String> error = new AtomicReference<>(null);
+        final Map<String, Future<Map<EntityKey, DiffEntry>>> diffsByPath = new LinkedHashMap<>();
         getEntitiesMap().keySet().stream().forEach(path -> {
-            final Map<String, Map<String, String>> remoteMap = remoteMultiMap.get(path);
+            final Map<EntityKey, RemoteEntity> remoteMap =
+                    remoteMultiMap.getOrDefault(path, Collections.emptyMap());
+            diffsByPath.put(path, DIFF_EXECUTOR.submit(() -> makeDiffMap(path, remoteMap)));
+        });
+        String error = null;
+        for (Future<Map<EntityKey, DiffEntry>> diffOfPath : diffsByPath.values()) {
             try {
-                makeDiffMap(path, remoteMap);
-            } catch (Exception e) {
-                error.set(e.getMessage());
+                diffMap.putAll(diffOfPath.get());
+            } catch (ExecutionException e) {
+                error = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = e.getMessage();
             }
-        });
-        if (error.get() != null) {
-            throw new RuntimeException(error.get());
         }
-        return diffMap;
-    }
-
-    private String getApi() {
-        if ("".equals(api) && properties != null) {
-            api = properties.getOrDefault(API_PROP, "localhost:9090").toString();
+        if (error != null) {
+            diffsByPath.values().forEach(diffOfPath -> diffOfPath.cancel(true));
+            throw new RuntimeException(error);
         }
-        return api;
+        return new ArrayList<>(diffMap.values());
     }
 
     @SuppressWarnings("unchecked")
@@ -94,152 +100,134 @@ public class DiffProcessor {
         return entitiesMap;
     }
 
-    @SuppressWarnings("unchecked")
-    private void makeDiffMap(String path, final Map<String, Map<String, String>> remoteMap) throws Exception {
-        List<?> entities = getEntitiesMap().get(path);
-
-        remoteMap.entrySet().stream()
-                .filter(entry ->
-                        entry.getValue().getOrDefault("_entity_type", "UNDEF").equals(path))
-                .forEach(entry ->
-                {
-                    final Map<String, String> entityProperties = entry.getValue();
-                    final String id = entityProperties.getOrDefault("id", "UNDEF");
-                    final String parentId = entityProperties.getOrDefault("parentId", "UNDEF");
-                    AtomicBoolean existEntity = new AtomicBoolean(false);
-
-                    entities.stream().filter(entity -> entity instanceof AbstractEntity<?> &&
-                                                       !((AbstractEntity)entity).getName().equals(PoolRepository.NO_PARENT_NAME))
-                            .map(entity -> ((AbstractEntity<?>) entity))
-                            .filter(entity -> entity.getName().equals(id))
-                            .filter(getAbstractEntityPredicate(parentId))
-                            .forEach(entity ->
-                            {
-                                if (!existEntity.get()) {
-                                    existEntity.set(true);
-                                    updateIfNecessary(path, id, parentId, entity, entityProperties);
-                                }
-                            });
-                    entities.stream().filter(entity -> !existEntity.get() && entity instanceof WithAliases).forEach(entity ->
-                    {
-                        WithAliases<?> withAliases = (WithAliases) entity;
-                        if (withAliases.getAliases().contains(id)) {
-                            existEntity.set(true);
-                        }
-                    });
-                    entities.stream().filter(entity -> !existEntity.get() && entity instanceof WithParents).forEach(entity -> {
-                        WithParents<?> withParents = (WithParents) entity;
-                        Set<WithAliases> withAliases = new HashSet<>((Collection<? extends WithAliases>) withParents.getParents());
-                        boolean isAlias = withAliases.stream().filter(v -> ((AbstractEntity<?>) withParents).getName().equals(id)).map(WithAliases::getAliases)
-                                .flatMap(Collection::stream).collect(Collectors.toSet()).contains(parentId);
-                        if (!existEntity.get() && isAlias) {
-                            existEntity.set(true);
-                        }
-                    });
-                    removeEntityIfNecessary(path, id, parentId, existEntity);
-                });
-
-        entities.stream().filter(entity -> entity instanceof AbstractEntity<?> &&
-                !((AbstractEntity)entity).getName().equals(PoolRepository.NO_PARENT_NAME))
-                .map(entity -> ((AbstractEntity<?>) entity))
-                .forEach(entity -> createEntityIfNecessary(path, entity, remoteMap));
+    private Map<EntityKey, DiffEntry> makeDiffMap(String path, final Map<EntityKey, RemoteEntity> remoteMap)
+            throws Exception {
+        final Map<EntityKey, DiffEntry> diffOfPath = new LinkedHashMap<>();
+        final List<LocalEntity> entities = getEntitiesMap().get(path).stream()
+                .map(this::toLocalEntity)
+                .filter(entity -> entity != null && !entity.getName().equals(PoolRepository.NO_PARENT_NAME))
+                .collect(toList());
+        final LocalIndex localIndex = new LocalIndex(entities);
+
+        remoteMap.values().forEach(remote -> {
+            final String id = remote.getId();
+            final String parentId = remote.getParentId();
+
+            final LocalEntity entity = localIndex.find(id, parentId);
+            if (entity != null) {
+                updateIfNecessary(path, id, parentId, entity, remote, diffOfPath);
+            } else if (!localIndex.isAlias(id) && !localIndex.isRuleOfAlias(id, parentId)) {
+                delAction(path, id, parentId, diffOfPath);
+            }
+        });
+
+        entities.forEach(entity -> createEntityIfNecessary(path, entity, remoteMap, diffOfPath));
+        return diffOfPath;
+    }
+
+    private LocalEntity toLocalEntity(Object entity) {
+        if (entity instanceof LocalEntity) {
+            return (LocalEntity) entity;
+        }
+        return entity instanceof AbstractEntity<?> ? LocalEntity.of((AbstractEntity<?>) entity) : null;
     }
 
     private void updateIfNecessary(String path,
                                    String id,
                                    String parentId,
-                                   final AbstractEntity<?> entity,
-                                   final Map<String, String> entityProperties) {
-        final String version = entityProperties.getOrDefault("version", "UNDEF");
-        final String pk = entityProperties.getOrDefault("pk", "UNDEF");
+                                   final LocalEntity entity,
+                                   final RemoteEntity remote,
+                                   final Map<EntityKey, DiffEntry> diffOfPath) {
         LOGGER.debug("Check if is necessary UPDATE");
-        if (!version.equals(String.valueOf(entity.getHash())) || !pk.equals(String.valueOf(entity.getId()))) {
-            changeAction(path, id, parentId);
+        if (!remote.hasVersion() || remote.getVersion() != entity.getHash()
+                || !remote.hasPk() || remote.getPk() != entity.getId()) {
+            changeAction(path, id, parentId, diffOfPath);
         }
     }
 
-    private void removeEntityIfNecessary(String path,
-                                         String id,
-                                         String parentId,
-                                         final AtomicBoolean existEntity) {
-        LOGGER.debug("Check if is necessary REMOVE");
-        if (!existEntity.get()) {
-            delAction(path, id, parentId);
-        }
-    }
-
-    @SuppressWarnings("unchecked")
     private void createEntityIfNecessary(String path,
-                                         final AbstractEntity<?> entity,
-                                         final Map<String, Map<String, String>> fullMap) {
+                                         final LocalEntity entity,
+                                         final Map<EntityKey, RemoteEntity> remoteMap,
+                                         final Map<EntityKey, DiffEntry> diffOfPath) {
         String id = entity.getName();
         LOGGER.debug("Check if is necessary CREATE");
-        if (!(entity instanceof WithParent) && !(entity instanceof WithParents)) {
-            addAction(path, id, "", fullMap.keySet());
-        }
-        if (entity instanceof WithParent) {
-            AbstractEntity<?> parentInstance = ((WithParent<AbstractEntity<?>>) entity).getParent();
-            String parentId = parentInstance != null ? parentInstance.getName() : "";
-            addAction(path, id, parentId, fullMap.keySet());
+        if (entity.isRoot()) {
+            addAction(path, id, "", remoteMap, diffOfPath);
+        } else {
+            entity.getParents().forEach(parentId -> addAction(path, id, parentId, remoteMap, diffOfPath));
         }
-        if (entity instanceof WithParents) {
-            ((WithParents<AbstractEntity<?>>) entity).getParents().forEach(aParent ->
-            {
-                String parentId = aParent.getName();
-                addAction(path, id, parentId, fullMap.keySet());
-            });
-        }
-    }
-
-    @SuppressWarnings("unchecked")
-    private Predicate<AbstractEntity<?>> getAbstractEntityPredicate(String parentId) {
-        return entity -> (!(entity instanceof WithParent) && !(entity instanceof WithParents)) ||
-                (entity instanceof WithParent) && (
-                        ((WithParent<AbstractEntity<?>>) entity).getParent() != null &&
-                                ((WithParent<AbstractEntity<?>>) entity).getParent().getName().equals(parentId)) ||
-                (entity instanceof WithParents) &&
-                        !((WithParents<AbstractEntity<?>>) entity).getParents().isEmpty() &&
-                        ((WithParents<AbstractEntity<?>>) entity).getParents().stream()
-                                .map(AbstractEntity::getName).collect(toList()).contains(parentId);
     }
 
     private void addAction(final String path,
                            final String id,
                            final String parentId,
-                           final Set<String> setOfKeys) {
-        String key = getApi() + "/" + path + "/" + id + "@" + parentId;
-        if (!setOfKeys.contains(key)) {
-            Map<String, Object> attributes = new HashMap<>();
-            attributes.put("ACTION", CREATE);
-            attributes.put("ID", id);
-            attributes.put("PARENT_ID", parentId);
-            attributes.put("ENTITY_TYPE", path);
-            diffMap.put(key, attributes);
+                           final Map<EntityKey, RemoteEntity> remoteMap,
+                           final Map<EntityKey, DiffEntry> diffOfPath) {
+        final EntityKey key = new EntityKey(path, id, parentId);
+        if (!remoteMap.containsKey(key)) {
+            diffOfPath.put(key, new DiffEntry(CREATE, key));
         }
     }
 
     private void changeAction(final String path,
                               final String id,
-                              final String parentId) {
-        Map<String, Object> attributes = new HashMap<>();
-        String key = getApi() + "/" + path + "/" + id + "@" + parentId;
-        attributes.put("ACTION", UPDATE);
-        attributes.put("ID", id);
-        attributes.put("PARENT_ID", parentId);
-        attributes.put("ENTITY_TYPE", path);
-        diffMap.put(key, attributes);
+                              final String parentId,
+                              final Map<EntityKey, DiffEntry> diffOfPath) {
+        final EntityKey key = new EntityKey(path, id, parentId);
+        diffOfPath.put(key, new DiffEntry(UPDATE, key));
     }
 
     private void delAction(final String path,
                            final String id,
-                           final String parentId) {
-        Map<String, Object> attributes = new HashMap<>();
-        String key = getApi() + "/" + path + "/" + id + "@" + parentId;
-        attributes.put("ACTION", REMOVE);
-        attributes.put("ID", id);
-        attributes.put("PARENT_ID", parentId);
-        attributes.put("ENTITY_TYPE", path);
-        diffMap.put(key, attributes);
+                           final String parentId,
+                           final Map<EntityKey, DiffEntry> diffOfPath) {
+        final EntityKey key = new EntityKey(path, id, parentId);
+        diffOfPath.put(key, new DiffEntry(REMOVE, key));
+    }
+
+    /**
+     * Indexes of the local entities of one entity type, built once per diff, so
+     * each remote entry is resolved with hash lookups instead of list scans.
+     */
+    private static class LocalIndex {
+
+        private final Map<String, LocalEntity> byNameAndParent = new HashMap<>();
+        private final Map<String, LocalEntity> byName = new HashMap<>();
+        private final Set<String> aliases = new HashSet<>();
+        private final Map<String, Set<String>> aliasesOfRuleParents = new HashMap<>();
+
+        LocalIndex(final List<LocalEntity> entities) {
+            entities.forEach(entity -> {
+                final String name = entity.getName();
+                if (entity.isRoot()) {
+                    byName.putIfAbsent(name, entity);
+                } else {
+                    entity.getParents().forEach(parent -> byNameAndParent.putIfAbsent(key(name, parent), entity));
+                    if (!entity.getParentAliases().isEmpty()) {
+                        aliasesOfRuleParents.computeIfAbsent(name, k -> new HashSet<>())
+                                .addAll(entity.getParentAliases());
+                    }
+                }
+                aliases.addAll(entity.getAliases());
+            });
+        }
+
+        LocalEntity find(String name, String parentName) {
+            final LocalEntity entity = byName.get(name);
+            return entity != null ? entity : byNameAndParent.get(key(name, parentName));
+        }
+
+        boolean isAlias(String name) {
+            return aliases.contains(name);
+        }
+
+        boolean isRuleOfAlias(String name, String parentName) {
+            return aliasesOfRuleParents.getOrDefault(name, Collections.emptySet()).contains(parentName);
+        }
+
+        private static String key(String name, String parentName) {
+            return name + "@" + parentName;
+        }
     }
 
 }
@@ -0,0 +1,111 @@
+/*
+ * Galeb - Load Balance as a Service Plataform
+ *
+ * Copyright (C) 2014-2016 Globo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ */
+package io.galeb.manager.engine.util;
+
+import io.galeb.core.model.Backend;
+import io.galeb.core.model.BackendPool;
+import io.galeb.core.model.Rule;
+import io.galeb.core.model.VirtualHost;
+import io.galeb.manager.engine.driver.DiffEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.galeb.manager.engine.driver.Driver.ActionOnDiff.REMOVE;
+
+/**
+ * Orders the fixes of a farm diff by dependency level. Creates and updates go
+ * pools, backends, virtualhosts and rules, so nothing is pushed before the
+ * entity it points to; removes go the other way round and run after them.
+ * Entries of the same level are independent and may be applied in parallel.
+ */
+public final class FixPlanner {
+
+    private static final List<String> LEVELS = Collections.unmodifiableList(Arrays.asList(
+            BackendPool.class.getSimpleName().toLowerCase(),
+            Backend.class.getSimpleName().toLowerCase(),
+            VirtualHost.class.getSimpleName().toLowerCase(),
+            Rule.class.getSimpleName().toLowerCase()));
+
+    private FixPlanner() {
+        // static only
+    }
+
+    public static int levelOf(String entityType) {
+        final int level = LEVELS.indexOf(entityType);
+        return level < 0 ? LEVELS.size() : level;
+    }
+
+    public static List<Level> plan(final List<DiffEntry> diff) {
+        final Map<Integer, List<DiffEntry>> upserts = new HashMap<>();
+        final Map<Integer, List<DiffEntry>> removes = new HashMap<>();
+        diff.forEach(diffEntry -> {
+            final Map<Integer, List<DiffEntry>> phase = diffEntry.getAction() == REMOVE ? removes : upserts;
+            phase.computeIfAbsent(levelOf(diffEntry.getEntityType()), level -> new ArrayList<>()).add(diffEntry);
+        });
+
+        final List<Level> plan = new ArrayList<>();
+        for (int level = 0; level <= LEVELS.size(); level++) {
+            addLevel(plan, false, upserts.get(level));
+        }
+        for (int level = LEVELS.size(); level >= 0; level--) {
+            addLevel(plan, true, removes.get(level));
+        }
+        return plan;
+    }
+
+    private static void addLevel(final List<Level> plan, boolean remove, final List<DiffEntry> entries) {
+        if (entries != null && !entries.isEmpty()) {
+            plan.add(new Level(remove, entries));
+        }
+    }
+
+    public static final class Level {
+
+        private final boolean remove;
+        private final List<DiffEntry> entries;
+
+        private Level(boolean remove, final List<DiffEntry> entries) {
+            this.remove = remove;
+            this.entries = Collections.unmodifiableList(entries);
+        }
+
+        public boolean isRemove() {
+            return remove;
+        }
+
+        public List<DiffEntry> getEntries() {
+            return entries;
+        }
+
+        public int size() {
+            return entries.size();
+        }
+
+        @Override
+        public String toString() {
+            return (remove ? "REMOVE " : "UPSERT ") + entries.get(0).getEntityType() + " x" + entries.size();
+        }
+    }
+}
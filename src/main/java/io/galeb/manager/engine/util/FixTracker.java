@@ -0,0 +1,173 @@
+/*
+ * Galeb - Load Balance as a Service Plataform
+ *
+ * Copyright (C) 2014-2016 Globo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ */
+package io.galeb.manager.engine.util;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Pending farm fixes per farm and api. A round starts with {@link #start} (diff
+ * running), learns its size with {@link #expect} and is counted down by the
+ * driver calls carrying the farm id. Counters are atomics in a concurrent map,
+ * so driver threads never contend on a shared monitor, and each round exposes
+ * a future completed when its last fix is done. Intermediate milestones (one
+ * dependency level of fixes applied) can be awaited with {@link #whenPendingAtMost}.
+ */
+public final class FixTracker {
+
+    public static final int DIFFING = -1;
+
+    private static final ConcurrentMap<String, Fixes> FIXES = new ConcurrentHashMap<>();
+
+    private FixTracker() {
+        // static only
+    }
+
+    public static String keyOf(long farmId, String api) {
+        return farmId + "@" + api;
+    }
+
+    public static void start(long farmId, String api) {
+        final Fixes previous = FIXES.put(keyOf(farmId, api), new Fixes());
+        if (previous != null) {
+            previous.finish();
+        }
+    }
+
+    public static void expect(long farmId, String api, int fixes) {
+        FIXES.computeIfAbsent(keyOf(farmId, api), k -> new Fixes()).set(fixes);
+    }
+
+    public static void fixed(long farmId, String api) {
+        final Fixes fixes = FIXES.get(keyOf(farmId, api));
+        if (fixes != null) {
+            fixes.decrement();
+        }
+    }
+
+    public static void refresh(long farmId, String api) {
+        final Fixes fixes = FIXES.get(keyOf(farmId, api));
+        if (fixes != null) {
+            fixes.touch();
+        }
+    }
+
+    public static void reset(long farmId, String api) {
+        expect(farmId, api, 0);
+    }
+
+    public static void remove(long farmId, String api) {
+        final Fixes fixes = FIXES.remove(keyOf(farmId, api));
+        if (fixes != null) {
+            fixes.finish();
+        }
+    }
+
+    public static boolean contains(long farmId, String api) {
+        return FIXES.containsKey(keyOf(farmId, api));
+    }
+
+    public static Integer pending(long farmId, String api) {
+        final Fixes fixes = FIXES.get(keyOf(farmId, api));
+        return fixes != null ? fixes.pending.get() : null;
+    }
+
+    public static Long lastChangeOf(long farmId, String api) {
+        final Fixes fixes = FIXES.get(keyOf(farmId, api));
+        return fixes != null ? fixes.lastChange : null;
+    }
+
+    public static CompletableFuture<Void> whenDone(long farmId, String api) {
+        final Fixes fixes = FIXES.get(keyOf(farmId, api));
+        return fixes != null ? fixes.done : CompletableFuture.completedFuture(null);
+    }
+
+    public static CompletableFuture<Void> whenPendingAtMost(long farmId, String api, int threshold) {
+        final Fixes fixes = FIXES.get(keyOf(farmId, api));
+        return fixes != null ? fixes.atMost(threshold) : CompletableFuture.completedFuture(null);
+    }
+
+    public static CompletableFuture<Void> whenDone(long farmId, final String[] apis) {
+        return CompletableFuture.allOf(Arrays.stream(apis)
+                .map(api -> whenDone(farmId, api))
+                .toArray(CompletableFuture<?>[]::new));
+    }
+
+    private static class Fixes {
+
+        private final AtomicInteger pending = new AtomicInteger(DIFFING);
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final ConcurrentMap<Integer, CompletableFuture<Void>> milestones = new ConcurrentHashMap<>();
+        private volatile long lastChange = currentTimeMillis();
+
+        void set(int value) {
+            pending.set(value);
+            touch();
+            if (value == 0) {
+                done.complete(null);
+            }
+            reached(value);
+        }
+
+        void decrement() {
+            final int remaining = pending.updateAndGet(value -> value > 0 ? value - 1 : value);
+            touch();
+            if (remaining == 0) {
+                done.complete(null);
+            }
+            reached(remaining);
+        }
+
+        CompletableFuture<Void> atMost(int threshold) {
+            final CompletableFuture<Void> milestone = milestones.computeIfAbsent(threshold, t -> new CompletableFuture<>());
+            if (done.isDone()) {
+                milestone.complete(null);
+            } else {
+                reached(pending.get());
+            }
+            return milestone;
+        }
+
+        private void reached(int remaining) {
+            if (remaining < 0) {
+                return;
+            }
+            milestones.forEach((threshold, milestone) -> {
+                if (remaining <= threshold) {
+                    milestone.complete(null);
+                }
+            });
+        }
+
+        void finish() {
+            done.complete(null);
+            milestones.values().forEach(milestone -> milestone.complete(null));
+        }
+
+        void touch() {
+            lastChange = currentTimeMillis();
+        }
+    }
+}
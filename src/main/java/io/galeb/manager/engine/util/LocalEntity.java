@@ -0,0 +1,170 @@
+/*
+ * Galeb - Load Balance as a Service Plataform
+ *
+ * Copyright (C) 2014-2016 Globo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ */
+package io.galeb.manager.engine.util;
+
+import io.galeb.manager.entity.AbstractEntity;
+import io.galeb.manager.entity.WithAliases;
+import io.galeb.manager.entity.WithParent;
+import io.galeb.manager.entity.WithParents;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * What the farm diff needs of a local entity: pk, name, hash, parent names and
+ * aliases (own aliases for virtualhosts, aliases of the parents for rules).
+ * Built from the FarmIDable projection tuples, or from a JPA entity.
+ */
+public class LocalEntity {
+
+    private static final int ID = 0;
+    private static final int NAME = 1;
+    private static final int HASH = 2;
+    private static final int PARENT = 3;
+    private static final int ALIAS = 3;
+    private static final int PARENT_ALIAS = 4;
+
+    private final long id;
+    private final String name;
+    private final int hash;
+    private final boolean root;
+    private final Set<String> parents = new HashSet<>();
+    private final Set<String> aliases = new HashSet<>();
+    private final Set<String> parentAliases = new HashSet<>();
+
+    public LocalEntity(long id, String name, int hash, boolean root) {
+        this.id = id;
+        this.name = name;
+        this.hash = hash;
+        this.root = root;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getHash() {
+        return hash;
+    }
+
+    /**
+     * Entities without parent are matched by name only, whatever parent the farm reports.
+     */
+    public boolean isRoot() {
+        return root;
+    }
+
+    public Set<String> getParents() {
+        return Collections.unmodifiableSet(parents);
+    }
+
+    public Set<String> getAliases() {
+        return Collections.unmodifiableSet(aliases);
+    }
+
+    public Set<String> getParentAliases() {
+        return Collections.unmodifiableSet(parentAliases);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static LocalEntity of(final AbstractEntity<?> entity) {
+        final boolean withParent = entity instanceof WithParent;
+        final boolean withParents = entity instanceof WithParents;
+        final LocalEntity local = new LocalEntity(entity.getId(), entity.getName(), entity.getHash(),
+                                                  !withParent && !withParents);
+        if (withParent) {
+            final AbstractEntity<?> parent = ((WithParent<AbstractEntity<?>>) entity).getParent();
+            local.parents.add(parent != null ? parent.getName() : "");
+        }
+        if (withParents) {
+            ((WithParents<AbstractEntity<?>>) entity).getParents().forEach(parent -> {
+                local.parents.add(parent.getName());
+                if (parent instanceof WithAliases) {
+                    local.parentAliases.addAll(((WithAliases<?>) parent).getAliases());
+                }
+            });
+        }
+        if (entity instanceof WithAliases) {
+            local.aliases.addAll(((WithAliases<?>) entity).getAliases());
+        }
+        return local;
+    }
+
+    /**
+     * Rows of [id, name, hash, alias].
+     */
+    public static List<LocalEntity> fromVirtualHostTuples(final List<Object[]> rows) {
+        return merge(rows, true, (local, row) -> addIfNotNull(local.aliases, row, ALIAS));
+    }
+
+    /**
+     * Rows of [id, name, hash].
+     */
+    public static List<LocalEntity> fromPoolTuples(final List<Object[]> rows) {
+        return merge(rows, true, (local, row) -> { });
+    }
+
+    /**
+     * Rows of [id, name, hash, parent name].
+     */
+    public static List<LocalEntity> fromTargetTuples(final List<Object[]> rows) {
+        return merge(rows, false, (local, row) -> local.parents.add(row[PARENT] != null ? (String) row[PARENT] : ""));
+    }
+
+    /**
+     * Rows of [id, name, hash, parent name, parent alias].
+     */
+    public static List<LocalEntity> fromRuleTuples(final List<Object[]> rows) {
+        return merge(rows, false, (local, row) -> {
+            addIfNotNull(local.parents, row, PARENT);
+            addIfNotNull(local.parentAliases, row, PARENT_ALIAS);
+        });
+    }
+
+    private static List<LocalEntity> merge(final List<Object[]> rows,
+                                           boolean root,
+                                           final BiConsumer<LocalEntity, Object[]> columns) {
+        final Map<Long, LocalEntity> byId = new LinkedHashMap<>();
+        rows.forEach(row -> {
+            final long id = ((Number) row[ID]).longValue();
+            final LocalEntity local = byId.computeIfAbsent(id, k ->
+                    new LocalEntity(id, (String) row[NAME], row[HASH] != null ? ((Number) row[HASH]).intValue() : 0, root));
+            columns.accept(local, row);
+        });
+        return new ArrayList<>(byId.values());
+    }
+
+    private static void addIfNotNull(final Set<String> values, final Object[] row, int column) {
+        if (row.length > column && row[column] != null) {
+            values.add((String) row[column]);
+        }
+    }
+
+}
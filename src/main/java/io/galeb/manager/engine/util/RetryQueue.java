@@ -0,0 +1,276 @@
+/*
+ * Galeb - Load Balance as a Service Plataform
+ *
+ * Copyright (C) 2014-2016 Globo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ */
+package io.galeb.manager.engine.util;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Retries failed farm writes on their own, per farm, with exponential backoff
+ * and jitter, instead of leaving them to the next full diff. Only the latest
+ * operation of an entity is kept: a newer failure supersedes a queued one, and
+ * a newer successful write cancels it, so a stale operation is never replayed.
+ * Whatever the outcome (success, give up, superseded, cancelled), the retry is
+ * settled exactly once, so the caller can release its pending fix there. A write
+ * that wasn't sent yet (throttled) is deferred: it runs again after the delay
+ * handed back by its deferral, without using up an attempt.
+ */
+public final class RetryQueue {
+
+    private static final Log LOGGER = LogFactory.getLog(RetryQueue.class);
+
+    private static final int MAX_ATTEMPTS = Integer.parseInt(System.getProperty("io.galeb.retry.maxAttempts", "5"));
+    private static final long BASE_DELAY = Long.parseLong(System.getProperty("io.galeb.retry.baseDelay", "500"));
+    private static final long MAX_DELAY = Long.parseLong(System.getProperty("io.galeb.retry.maxDelay", "10000"));
+    private static final int MAX_PER_FARM = Integer.parseInt(System.getProperty("io.galeb.retry.maxPerFarm", "500"));
+
+    private static final ScheduledThreadPoolExecutor EXECUTOR = SyncExecutors.newScheduledDaemonPool("farm-retry-",
+            SyncExecutors.threadsFromProperty("io.galeb.retry.threads", 4));
+
+    private static final ConcurrentMap<Long, ConcurrentMap<String, Retry>> QUEUES = new ConcurrentHashMap<>();
+    private static final LongSupplier DEFAULT_DEFERRAL = () -> BASE_DELAY;
+
+    private static final AtomicLong ATTEMPTS = new AtomicLong(0L);
+    private static final AtomicLong SUCCEEDED = new AtomicLong(0L);
+    private static final AtomicLong EXHAUSTED = new AtomicLong(0L);
+    private static final AtomicLong SUPERSEDED = new AtomicLong(0L);
+    private static final AtomicLong DROPPED = new AtomicLong(0L);
+    private static final AtomicLong CANCELLED = new AtomicLong(0L);
+    private static final AtomicLong DEFERRED = new AtomicLong(0L);
+
+    public enum Outcome {
+        SUCCEEDED,
+        FAILED,
+        GAVE_UP,
+        DEFERRED
+    }
+
+    /**
+     * One try of a queued write: FAILED schedules another one (up to
+     * io.galeb.retry.maxAttempts), GAVE_UP stops retrying a write that can't succeed
+     * and DEFERRED runs it again after its deferral, as a write that wasn't sent.
+     */
+    @FunctionalInterface
+    public interface Attempt {
+        Outcome run();
+    }
+
+    private RetryQueue() {
+        // static only
+    }
+
+    public static boolean submit(long farmId, String key, final BooleanSupplier attempt, final Runnable onSettled) {
+        return submit(farmId, key, (Attempt) () -> attempt.getAsBoolean() ? Outcome.SUCCEEDED : Outcome.FAILED, onSettled);
+    }
+
+    public static boolean submit(long farmId, String key, final Attempt attempt, final Runnable onSettled) {
+        return submit(farmId, key, attempt, onSettled, DEFAULT_DEFERRAL);
+    }
+
+    /**
+     * Queues a write that failed: it is retried with backoff, and after the delay
+     * given by deferral whenever an attempt is DEFERRED.
+     *
+     * @return false if the queue of the farm is full: the write is dropped and
+     * settled right away
+     */
+    public static boolean submit(long farmId, String key, final Attempt attempt, final Runnable onSettled,
+                                 final LongSupplier deferral) {
+        return enqueue(new Retry(farmId, key, attempt, onSettled, deferral), false);
+    }
+
+    /**
+     * Queues a write that wasn't sent yet: its first attempt runs after the delay
+     * given by deferral instead of the backoff.
+     *
+     * @return false if the queue of the farm is full, as for submit
+     */
+    public static boolean defer(long farmId, String key, final Attempt attempt, final Runnable onSettled,
+                                final LongSupplier deferral) {
+        DEFERRED.incrementAndGet();
+        return enqueue(new Retry(farmId, key, attempt, onSettled, deferral), true);
+    }
+
+    private static boolean enqueue(final Retry retry, boolean deferred) {
+        final long farmId = retry.farmId;
+        final String key = retry.key;
+        final ConcurrentMap<String, Retry> queue = QUEUES.computeIfAbsent(farmId, id -> new ConcurrentHashMap<>());
+        if (queue.size() >= MAX_PER_FARM && !queue.containsKey(key)) {
+            LOGGER.warn("Retry queue of farm " + farmId + " is full. Dropping " + key);
+            DROPPED.incrementAndGet();
+            retry.onSettled.run();
+            return false;
+        }
+        final Retry previous = queue.put(key, retry);
+        if (previous != null && previous.settle()) {
+            SUPERSEDED.incrementAndGet();
+        }
+        schedule(retry, deferred);
+        return true;
+    }
+
+    /**
+     * Settles the queued retry of key, if any, without running it: a newer write
+     * of the same entity made it stale.
+     */
+    public static void cancel(long farmId, String key) {
+        final ConcurrentMap<String, Retry> queue = QUEUES.get(farmId);
+        final Retry retry = queue != null ? queue.remove(key) : null;
+        if (retry != null && retry.settle()) {
+            CANCELLED.incrementAndGet();
+        }
+    }
+
+    public static long backoff(int attempt) {
+        final long ceiling = Math.min(MAX_DELAY, BASE_DELAY << Math.min(attempt - 1, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    public static int pending() {
+        return QUEUES.values().stream().mapToInt(Map::size).sum();
+    }
+
+    public static Map<Long, Integer> pendingByFarm() {
+        return Collections.unmodifiableMap(QUEUES.entrySet().stream()
+                .filter(entry -> !entry.getValue().isEmpty())
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().size())));
+    }
+
+    public static long attempts() {
+        return ATTEMPTS.get();
+    }
+
+    public static long succeeded() {
+        return SUCCEEDED.get();
+    }
+
+    public static long exhausted() {
+        return EXHAUSTED.get();
+    }
+
+    public static long superseded() {
+        return SUPERSEDED.get();
+    }
+
+    public static long dropped() {
+        return DROPPED.get();
+    }
+
+    public static long cancelled() {
+        return CANCELLED.get();
+    }
+
+    public static long deferred() {
+        return DEFERRED.get();
+    }
+
+    private static void schedule(final Retry retry, boolean deferred) {
+        final long delay = deferred ? Math.max(1L, retry.deferral.getAsLong()) : backoff(retry.attempts + 1);
+        EXECUTOR.schedule(() -> run(retry), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static void run(final Retry retry) {
+        if (retry.isSettled()) {
+            return;
+        }
+        Outcome outcome = Outcome.FAILED;
+        try {
+            outcome = retry.attempt.run();
+        } catch (Exception e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+        }
+        if (outcome == Outcome.DEFERRED) {
+            DEFERRED.incrementAndGet();
+            if (!retry.isSettled()) {
+                schedule(retry, true);
+            }
+            return;
+        }
+        retry.attempts++;
+        ATTEMPTS.incrementAndGet();
+        if (outcome == Outcome.SUCCEEDED) {
+            SUCCEEDED.incrementAndGet();
+            finish(retry);
+        } else if (outcome == Outcome.GAVE_UP) {
+            LOGGER.warn("Not retrying " + retry.key + " (farm " + retry.farmId + ") anymore");
+            EXHAUSTED.incrementAndGet();
+            finish(retry);
+        } else if (retry.attempts >= MAX_ATTEMPTS) {
+            LOGGER.warn("Giving up " + retry.key + " (farm " + retry.farmId + ") after " + retry.attempts + " retries");
+            EXHAUSTED.incrementAndGet();
+            finish(retry);
+        } else if (!retry.isSettled()) {
+            schedule(retry, false);
+        }
+    }
+
+    private static void finish(final Retry retry) {
+        final ConcurrentMap<String, Retry> queue = QUEUES.get(retry.farmId);
+        if (queue != null) {
+            queue.remove(retry.key, retry);
+        }
+        retry.settle();
+    }
+
+    private static class Retry {
+
+        private final long farmId;
+        private final String key;
+        private final Attempt attempt;
+        private final Runnable onSettled;
+        private final LongSupplier deferral;
+        private final AtomicBoolean settled = new AtomicBoolean(false);
+        private volatile int attempts = 0;
+
+        Retry(long farmId, String key, final Attempt attempt, final Runnable onSettled, final LongSupplier deferral) {
+            this.farmId = farmId;
+            this.key = key;
+            this.attempt = attempt;
+            this.onSettled = onSettled;
+            this.deferral = deferral;
+        }
+
+        boolean isSettled() {
+            return settled.get();
+        }
+
+        boolean settle() {
+            if (settled.compareAndSet(false, true)) {
+                onSettled.run();
+                return true;
+            }
+            return false;
+        }
+    }
+}
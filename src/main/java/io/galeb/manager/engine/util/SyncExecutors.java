@@ -0,0 +1,70 @@
+/*
+ * Galeb - Load Balance as a Service Plataform
+ *
+ * Copyright (C) 2014-2016 Globo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ */
+
+package io.galeb.manager.engine.util;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class SyncExecutors {
+
+    private SyncExecutors() {
+        // static only
+    }
+
+    public static int threadsFromProperty(String property, int defaultThreads) {
+        try {
+            return Math.max(1, Integer.parseInt(System.getProperty(property, String.valueOf(defaultThreads))));
+        } catch (NumberFormatException e) {
+            return Math.max(1, defaultThreads);
+        }
+    }
+
+    public static ExecutorService newFixedDaemonPool(String threadNamePrefix, int threads) {
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(threads, threadFactory);
+    }
+
+    /**
+     * Fixed pool whose queue holds at most queueCapacity tasks; beyond that,
+     * execute throws RejectedExecutionException instead of queueing without bound.
+     */
+    public static ThreadPoolExecutor newBoundedDaemonPool(String threadNamePrefix, int threads, int queueCapacity) {
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+        threadFactory.setDaemon(true);
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory);
+    }
+
+    public static ScheduledThreadPoolExecutor newScheduledDaemonPool(String threadNamePrefix, int threads) {
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+        threadFactory.setDaemon(true);
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, threadFactory);
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Galeb - Load Balance as a Service Plataform
+ *
+ * Copyright (C) 2014-2016 Globo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ */
+package io.galeb.manager.engine.util;
+
+import io.galeb.manager.engine.driver.EntityKey;
+import io.galeb.manager.engine.driver.RemoteEntity;
+import io.galeb.manager.entity.AbstractEntity;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Order-independent fingerprints of the local desired state (id, name, parents,
+ * hash) and of the remote state (key, version, _etag) of a farm api. When both
+ * are the same as on the last diff that found nothing to fix, the diff can be
+ * skipped. Each element is mixed to 64 bits and summed, so neither side needs
+ * sorting.
+ */
+public final class SyncFingerprint {
+
+    private static final ConcurrentMap<String, long[]> CONSISTENT = new ConcurrentHashMap<>();
+
+    private static final AtomicLong SKIPPED = new AtomicLong(0L);
+    private static final AtomicLong DIFFED = new AtomicLong(0L);
+
+    private SyncFingerprint() {
+        // static only
+    }
+
+    public static long ofLocal(final Map<String, List<?>> entitiesMap) {
+        long fingerprint = 0L;
+        for (Map.Entry<String, List<?>> entities : entitiesMap.entrySet()) {
+            for (Object entity : entities.getValue()) {
+                final LocalEntity local = entity instanceof LocalEntity ?
+                        (LocalEntity) entity : LocalEntity.of((AbstractEntity<?>) entity);
+                fingerprint += element(entities.getKey(), local.getId(), local.getName(), local.getParents(),
+                        local.getAliases(), local.getParentAliases(), local.getHash());
+            }
+        }
+        return fingerprint;
+    }
+
+    public static long ofRemote(final Map<String, Map<EntityKey, RemoteEntity>> remoteMultiMap) {
+        long fingerprint = 0L;
+        for (Map.Entry<String, Map<EntityKey, RemoteEntity>> remoteMap : remoteMultiMap.entrySet()) {
+            for (RemoteEntity remote : remoteMap.getValue().values()) {
+                fingerprint += element(remoteMap.getKey(), remote.getKey(), remote.hasVersion(), remote.getVersion(),
+                        remote.getEtag());
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @return true if local and remote didn't change since the last consistent diff
+     */
+    public static boolean isUnchanged(long farmId, String api, long local, long remote) {
+        final long[] last = CONSISTENT.get(FixTracker.keyOf(farmId, api));
+        final boolean unchanged = last != null && last[0] == local && last[1] == remote;
+        (unchanged ? SKIPPED : DIFFED).incrementAndGet();
+        return unchanged;
+    }
+
+    public static void consistent(long farmId, String api, long local, long remote) {
+        CONSISTENT.put(FixTracker.keyOf(farmId, api), new long[] { local, remote });
+    }
+
+    public static void forget(long farmId, String api) {
+        CONSISTENT.remove(FixTracker.keyOf(farmId, api));
+    }
+
+    public static long skipped() {
+        return SKIPPED.get();
+    }
+
+    public static long diffed() {
+        return DIFFED.get();
+    }
+
+    private static long element(Object... parts) {
+        long hash = 1125899906842597L;
+        for (Object part : parts) {
+            hash = 31 * hash + (part != null ? part.hashCode() : 0);
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Galeb - Load Balance as a Service Plataform
+ *
+ * Copyright (C) 2014-2016 Globo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ */
+package io.galeb.manager.engine.util;
+
+import io.galeb.manager.engine.driver.DiffEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Result of a dry-run sync: what a sync of the farm would push, grouped by action
+ * and entity type, and how long each phase took. Nothing is enqueued to build it.
+ */
+public class SyncPlan {
+
+    private final String farm;
+    private long dbLoadMs;
+    private int localEntities;
+    private final List<ApiPlan> apis = new ArrayList<>();
+
+    public SyncPlan(String farm) {
+        this.farm = farm;
+    }
+
+    public String getFarm() {
+        return farm;
+    }
+
+    public long getDbLoadMs() {
+        return dbLoadMs;
+    }
+
+    public SyncPlan setDbLoadMs(long dbLoadMs) {
+        this.dbLoadMs = dbLoadMs;
+        return this;
+    }
+
+    public int getLocalEntities() {
+        return localEntities;
+    }
+
+    public SyncPlan setLocalEntities(int localEntities) {
+        this.localEntities = localEntities;
+        return this;
+    }
+
+    public List<ApiPlan> getApis() {
+        return apis;
+    }
+
+    public SyncPlan addApi(ApiPlan apiPlan) {
+        apis.add(apiPlan);
+        return this;
+    }
+
+    public static class ApiPlan {
+
+        private final String api;
+        private long fetchMs;
+        private long diffMs;
+        private int remoteEntities;
+        private int actions;
+        private int levels;
+        private String error;
+        private final Map<String, Map<String, List<String>>> planned = new TreeMap<>();
+
+        public ApiPlan(String api) {
+            this.api = api;
+        }
+
+        public String getApi() {
+            return api;
+        }
+
+        public long getFetchMs() {
+            return fetchMs;
+        }
+
+        public ApiPlan setFetchMs(long fetchMs) {
+            this.fetchMs = fetchMs;
+            return this;
+        }
+
+        public long getDiffMs() {
+            return diffMs;
+        }
+
+        public ApiPlan setDiffMs(long diffMs) {
+            this.diffMs = diffMs;
+            return this;
+        }
+
+        public int getRemoteEntities() {
+            return remoteEntities;
+        }
+
+        public ApiPlan setRemoteEntities(int remoteEntities) {
+            this.remoteEntities = remoteEntities;
+            return this;
+        }
+
+        /**
+         * Number of fixes the sync would dispatch.
+         */
+        public int getActions() {
+            return actions;
+        }
+
+        /**
+         * Number of dependency levels the fixes would be applied in (see FixPlanner).
+         */
+        public int getLevels() {
+            return levels;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public ApiPlan setError(String error) {
+            this.error = error;
+            return this;
+        }
+
+        public Map<String, Map<String, List<String>>> getPlanned() {
+            return planned;
+        }
+
+        public ApiPlan setDiff(final List<DiffEntry> diff) {
+            actions = diff.size();
+            levels = FixPlanner.plan(diff).size();
+            planned.clear();
+            diff.forEach(diffEntry -> planned
+                    .computeIfAbsent(diffEntry.getAction().toString(), action -> new TreeMap<>())
+                    .computeIfAbsent(diffEntry.getEntityType(), entityType -> new ArrayList<>())
+                    .add(diffEntry.getParentId() == null || "".equals(diffEntry.getParentId()) ?
+                            diffEntry.getId() : diffEntry.getId() + " @ " + diffEntry.getParentId()));
+            return this;
+        }
+    }
+}
@@ -32,6 +32,7 @@ public abstract class AbstractEntitySyncronizable {
     private static final Log LOGGER = LogFactory.getLog(AbstractEntitySyncronizable.class);
 
     public static final String PREFIX_HAS_CHANGE = "haschange";
+    public static final String PREFIX_SYNC_JOURNAL = "syncjournal";
     public static final String PREFIX_LAST_ETAG  = "last_etag";
     public static final String PREFIX_ETAG       = "etag";
     public static final String PROP_FULLHASH     = "fullhash";
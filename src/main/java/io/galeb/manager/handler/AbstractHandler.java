@@ -18,8 +18,10 @@
 
 package io.galeb.manager.handler;
 
+import io.galeb.manager.engine.service.SyncJournal;
 import io.galeb.manager.entity.WithFarmID;
 import io.galeb.manager.exceptions.BadRequestException;
+import io.galeb.manager.scheduler.FarmSyncTrigger;
 import org.apache.commons.logging.Log;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
@@ -38,12 +40,28 @@ public abstract class AbstractHandler<T extends AbstractEntity<?>> {
         return null;
     }
 
+    protected FarmSyncTrigger syncTrigger() {
+        // NULL: the farm waits for the next SyncFarms tick
+        return null;
+    }
+
+    private void wakeFarmSync(T entity) {
+        if (syncTrigger() != null && entity instanceof WithFarmID && !entity.isSaveOnly()) {
+            syncTrigger().wake(((WithFarmID<?>) entity).getFarmId());
+        }
+    }
+
     private void registerHasChange(T entity) {
         if (template() != null) {
             String env = entity.getEnvName();
             String suffix = entity.getClass().getSimpleName().toLowerCase() + ":" + entity.getId() + ":" + entity.getLastModifiedAt().getTime();
             final ValueOperations<String, String> valueOperations = template().opsForValue();
             valueOperations.setIfAbsent(PREFIX_HAS_CHANGE + ":" + env + ":" + suffix, env);
+            if (entity instanceof WithFarmID) {
+                String entityType = entity.getClass().getSimpleName().toLowerCase();
+                template().opsForSet().add(SyncJournal.keyOf(((WithFarmID<?>) entity).getFarmId()),
+                                           SyncJournal.memberOf(entityType, entity.getName()));
+            }
         }
     }
 
@@ -57,6 +75,7 @@ public abstract class AbstractHandler<T extends AbstractEntity<?>> {
 
     public void afterCreate(T entity, Log logger) throws Exception {
         registerHasChange(entity);
+        wakeFarmSync(entity);
         logger.info(entity.getClass().getSimpleName()+": HandleAfterCreate");
     }
 
@@ -75,6 +94,7 @@ public abstract class AbstractHandler<T extends AbstractEntity<?>> {
 
     public void afterSave(T entity, Log logger) throws Exception {
         registerHasChange(entity);
+        wakeFarmSync(entity);
         String entityTypeName = entity.getClass().getSimpleName();
         logger.info(entityTypeName+": HandleAfterSave");
         if (entity.isSaveOnly()) {
@@ -89,6 +109,7 @@ public abstract class AbstractHandler<T extends AbstractEntity<?>> {
 
     public void afterDelete(T entity, Log logger) throws Exception {
         registerHasChange(entity);
+        wakeFarmSync(entity);
         logger.info(entity.getClass().getSimpleName()+": HandleAfterDelete");
     }
 
@@ -30,6 +30,7 @@ import io.galeb.manager.repository.FarmRepository;
 import io.galeb.manager.repository.PoolRepository;
 import io.galeb.manager.security.user.CurrentUser;
 import io.galeb.manager.security.services.SystemUserService;
+import io.galeb.manager.scheduler.FarmSyncTrigger;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -52,6 +53,7 @@ public class PoolHandler extends AbstractHandler<Pool> {
     @Autowired private FarmRepository farmRepository;
     @Autowired private DistMap distMap;
     @Autowired private StringRedisTemplate template;
+    @Autowired private FarmSyncTrigger syncTrigger;
 
     @Override
     protected void setBestFarm(final Pool pool) throws Exception {
@@ -119,4 +121,9 @@ public class PoolHandler extends AbstractHandler<Pool> {
     protected StringRedisTemplate template() {
         return template;
     }
+
+    @Override
+    protected FarmSyncTrigger syncTrigger() {
+        return syncTrigger;
+    }
 }
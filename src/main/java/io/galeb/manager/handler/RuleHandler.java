@@ -41,6 +41,7 @@ import io.galeb.manager.entity.Rule;
 import io.galeb.manager.entity.VirtualHost;
 import io.galeb.manager.exceptions.BadRequestException;
 import io.galeb.manager.repository.RuleRepository;
+import io.galeb.manager.scheduler.FarmSyncTrigger;
 
 @RepositoryEventHandler(Rule.class)
 public class RuleHandler extends AbstractHandler<Rule> {
@@ -53,6 +54,7 @@ public class RuleHandler extends AbstractHandler<Rule> {
     @Autowired private DistMap distMap;
     @Autowired private VirtualHostHandler virtualHostHandler;
     @Autowired private StringRedisTemplate template;
+    @Autowired private FarmSyncTrigger syncTrigger;
 
     @Override
     protected void setBestFarm(final Rule rule) throws Exception {
@@ -142,6 +144,11 @@ public class RuleHandler extends AbstractHandler<Rule> {
         return template;
     }
 
+    @Override
+    protected FarmSyncTrigger syncTrigger() {
+        return syncTrigger;
+    }
+
     private enum After {
         CREATE {
             @Override
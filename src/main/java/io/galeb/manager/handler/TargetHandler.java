@@ -43,6 +43,7 @@ import io.galeb.manager.repository.FarmRepository;
 import io.galeb.manager.repository.TargetRepository;
 import io.galeb.manager.security.user.CurrentUser;
 import io.galeb.manager.security.services.SystemUserService;
+import io.galeb.manager.scheduler.FarmSyncTrigger;
 
 import java.util.List;
 import java.util.Optional;
@@ -57,6 +58,7 @@ public class TargetHandler extends AbstractHandler<Target> {
     @Autowired private FarmRepository farmRepository;
     @Autowired private DistMap distMap;
     @Autowired private StringRedisTemplate template;
+    @Autowired private FarmSyncTrigger syncTrigger;
 
     @Override
     protected void setBestFarm(final Target target) throws Exception {
@@ -179,4 +181,9 @@ public class TargetHandler extends AbstractHandler<Target> {
     protected StringRedisTemplate template() {
         return template;
     }
+
+    @Override
+    protected FarmSyncTrigger syncTrigger() {
+        return syncTrigger;
+    }
 }
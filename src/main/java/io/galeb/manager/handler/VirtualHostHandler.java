@@ -43,6 +43,7 @@ import io.galeb.manager.repository.FarmRepository;
 import io.galeb.manager.repository.VirtualHostRepository;
 import io.galeb.manager.security.user.CurrentUser;
 import io.galeb.manager.security.services.SystemUserService;
+import io.galeb.manager.scheduler.FarmSyncTrigger;
 
 import java.util.Collections;
 import java.util.HashSet;
@@ -61,6 +62,7 @@ public class VirtualHostHandler extends AbstractHandler<VirtualHost> {
     @Autowired private DistMap distMap;
     @SuppressWarnings("SpringJavaAutowiringInspection")
     @Autowired private StringRedisTemplate template;
+    @Autowired private FarmSyncTrigger syncTrigger;
 
     @Override
     protected void setBestFarm(final VirtualHost virtualhost) {
@@ -162,4 +164,9 @@ public class VirtualHostHandler extends AbstractHandler<VirtualHost> {
     protected StringRedisTemplate template() {
         return template;
     }
+
+    @Override
+    protected FarmSyncTrigger syncTrigger() {
+        return syncTrigger;
+    }
 }
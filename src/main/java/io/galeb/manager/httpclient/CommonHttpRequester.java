@@ -18,10 +18,16 @@
 
 package io.galeb.manager.httpclient;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 public interface CommonHttpRequester {
 
@@ -37,4 +43,90 @@ public interface CommonHttpRequester {
 
     boolean bodyIsEmptyOrEmptyArray(final ResponseEntity<String> response);
 
+    /**
+     * GET uriPath and hand the response body to the extractor as a stream.
+     * Returns null if the status is not 2xx or there is no body.
+     * This default still buffers the body through {@link #get(String)}.
+     */
+    default <T> T getAndExtract(String uriPath, BodyExtractor<T> extractor) throws URISyntaxException, IOException {
+        final ResponseEntity<String> response = get(uriPath);
+        if (!isStatusCodeEqualOrLessThan(response, HttpStatus.OK.value()) || !response.hasBody()) {
+            return null;
+        }
+        try (InputStream body = new ByteArrayInputStream(response.getBody().getBytes(StandardCharsets.UTF_8))) {
+            return extractor.extract(body);
+        }
+    }
+
+    /**
+     * Conditional variant of {@link #getAndExtract(String, BodyExtractor)}: sends
+     * If-None-Match when etag is not null and reports a 304 as not modified, without
+     * a body. This default ignores the etag and always extracts the body.
+     */
+    default <T> Conditional<T> getAndExtractIfNoneMatch(String uriPath, String etag, BodyExtractor<T> extractor)
+            throws URISyntaxException, IOException {
+        return new Conditional<>(getAndExtract(uriPath, extractor), null, false);
+    }
+
+    /**
+     * Async variants. The defaults run the blocking call on the caller thread
+     * and return an already completed future; FarmClient overrides them with
+     * a non-blocking client.
+     */
+    default CompletableFuture<ResponseEntity<String>> getAsync(String uriPath) {
+        return completedWith(() -> get(uriPath));
+    }
+
+    default CompletableFuture<ResponseEntity<String>> postAsync(String uriPath, String body) {
+        return completedWith(() -> post(uriPath, body));
+    }
+
+    default CompletableFuture<ResponseEntity<String>> putAsync(String uriPath, String body) {
+        return completedWith(() -> put(uriPath, body));
+    }
+
+    default CompletableFuture<ResponseEntity<String>> deleteAsync(String uriPath, String body) {
+        return completedWith(() -> delete(uriPath, body));
+    }
+
+    static CompletableFuture<ResponseEntity<String>> completedWith(Callable<ResponseEntity<String>> call) {
+        final CompletableFuture<ResponseEntity<String>> future = new CompletableFuture<>();
+        try {
+            future.complete(call.call());
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @FunctionalInterface
+    interface BodyExtractor<T> {
+        T extract(InputStream body) throws IOException;
+    }
+
+    final class Conditional<T> {
+
+        private final T body;
+        private final String etag;
+        private final boolean notModified;
+
+        public Conditional(T body, String etag, boolean notModified) {
+            this.body = body;
+            this.etag = etag;
+            this.notModified = notModified;
+        }
+
+        public T getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public boolean isNotModified() {
+            return notModified;
+        }
+    }
+
 }
@@ -23,24 +23,40 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.annotation.NotThreadSafe;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.util.EntityUtils;
 import org.springframework.boot.logging.LogLevel;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestClientException;
@@ -54,6 +70,13 @@ import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
@@ -63,19 +86,106 @@ public class FarmClient implements CommonHttpRequester {
     private static final Log LOGGER = LogFactory.getLog(FarmClient.class);
     private static final int DRIVER_READ_TIMEOUT = Integer.parseInt(System.getProperty("io.galeb.read.timeout", "60000"));
     private static final int DRIVER_CONNECT_TIMEOUT = Integer.parseInt(System.getProperty("io.galeb.connect.timeout", "5000"));
+    private static final int DRIVER_MAX_CONN_TOTAL = Integer.parseInt(System.getProperty("io.galeb.http.maxConnTotal", "64"));
+    private static final int DRIVER_MAX_CONN_PER_ROUTE = Integer.parseInt(System.getProperty("io.galeb.http.maxConnPerRoute", "32"));
+    private static final long DRIVER_IDLE_TIMEOUT = Long.parseLong(System.getProperty("io.galeb.http.idleTimeout", "30000"));
+
+    private static final long CLOSED = -1L;
+
+    private static final Set<FarmClient> CLIENTS = ConcurrentHashMap.newKeySet();
+    private static final ScheduledExecutorService IDLE_EVICTOR;
+
+    static {
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("farm-client-evictor-");
+        threadFactory.setDaemon(true);
+        IDLE_EVICTOR = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long evictionPeriod = Math.max(1000L, DRIVER_IDLE_TIMEOUT / 2);
+        IDLE_EVICTOR.scheduleWithFixedDelay(() -> CLIENTS.forEach(FarmClient::closeIdleConnections),
+                evictionPeriod, evictionPeriod, TimeUnit.MILLISECONDS);
+    }
 
     private final RestTemplate restTemplate;
-    private final RequestConfig defaultRequestConfig;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final PoolingNHttpClientConnectionManager asyncConnectionManager;
+    private final CloseableHttpClient httpClient;
+    private final CloseableHttpAsyncClient asyncHttpClient;
+    private final AtomicLong lastUsed = new AtomicLong(System.currentTimeMillis());
 
     public FarmClient() {
-        SimpleClientHttpRequestFactory clientHttp = new SimpleClientHttpRequestFactory();
-        clientHttp.setReadTimeout(DRIVER_READ_TIMEOUT);
-        clientHttp.setConnectTimeout(DRIVER_CONNECT_TIMEOUT);
-        this.restTemplate = new RestTemplate(clientHttp);
-        this.defaultRequestConfig = RequestConfig.custom().setSocketTimeout(DRIVER_READ_TIMEOUT)
+        final RequestConfig defaultRequestConfig = RequestConfig.custom().setSocketTimeout(DRIVER_READ_TIMEOUT)
                                                           .setConnectTimeout(DRIVER_CONNECT_TIMEOUT)
                                                           .setConnectionRequestTimeout(DRIVER_CONNECT_TIMEOUT)
                                                           .build();
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        this.connectionManager.setMaxTotal(DRIVER_MAX_CONN_TOTAL);
+        this.connectionManager.setDefaultMaxPerRoute(DRIVER_MAX_CONN_PER_ROUTE);
+        this.httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+                                              .setDefaultRequestConfig(defaultRequestConfig)
+                                              .build();
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        try {
+            this.asyncConnectionManager = new PoolingNHttpClientConnectionManager(
+                    new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT));
+        } catch (IOReactorException e) {
+            throw new IllegalStateException(e);
+        }
+        this.asyncConnectionManager.setMaxTotal(DRIVER_MAX_CONN_TOTAL);
+        this.asyncConnectionManager.setDefaultMaxPerRoute(DRIVER_MAX_CONN_PER_ROUTE);
+        this.asyncHttpClient = HttpAsyncClients.custom().setConnectionManager(asyncConnectionManager)
+                                                        .setDefaultRequestConfig(defaultRequestConfig)
+                                                        .build();
+        this.asyncHttpClient.start();
+        CLIENTS.add(this);
+    }
+
+    static ScheduledExecutorService idleEvictor() {
+        return IDLE_EVICTOR;
+    }
+
+    /**
+     * Marks the client as used now.
+     * @return false if the client was already closed and must not be used
+     */
+    boolean touch() {
+        long last;
+        do {
+            last = lastUsed.get();
+            if (last == CLOSED) {
+                return false;
+            }
+        } while (!lastUsed.compareAndSet(last, System.currentTimeMillis()));
+        return true;
+    }
+
+    /**
+     * Closes the client if it was not used for idleTimeout ms. A client is
+     * closed at most once and {@link #touch()} fails from then on.
+     * @return true if this call closed the client
+     */
+    boolean closeIfIdle(long idleTimeout) {
+        final long last = lastUsed.get();
+        if (last == CLOSED || System.currentTimeMillis() - last < idleTimeout || !lastUsed.compareAndSet(last, CLOSED)) {
+            return false;
+        }
+        close();
+        return true;
+    }
+
+    private void close() {
+        CLIENTS.remove(this);
+        try {
+            httpClient.close();
+            asyncHttpClient.close();
+        } catch (IOException e) {
+            LOGGER.warn(e.getMessage());
+        }
+    }
+
+    private void closeIdleConnections() {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(DRIVER_IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+        asyncConnectionManager.closeExpiredConnections();
+        asyncConnectionManager.closeIdleConnections(DRIVER_IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -87,6 +197,44 @@ public class FarmClient implements CommonHttpRequester {
         return response;
     }
 
+    @Override
+    public <T> T getAndExtract(String uriPath, BodyExtractor<T> extractor) throws URISyntaxException, RestClientException {
+        final URI uri = new URI(uriWithProto(uriPath));
+        return restTemplate.execute(uri, HttpMethod.GET, null, response -> {
+            final int statusCode = response.getRawStatusCode();
+            LOGGER.info("GET " + uri + " - HTTP/1.? " + statusCode + " " + response.getStatusText());
+            if (statusCode > HttpStatus.OK.value()) {
+                return null;
+            }
+            try (InputStream body = response.getBody()) {
+                return body != null ? extractor.extract(body) : null;
+            }
+        });
+    }
+
+    @Override
+    public <T> Conditional<T> getAndExtractIfNoneMatch(String uriPath, String etag, BodyExtractor<T> extractor)
+            throws URISyntaxException, RestClientException {
+        final URI uri = new URI(uriWithProto(uriPath));
+        return restTemplate.execute(uri, HttpMethod.GET, request -> {
+            if (etag != null) {
+                request.getHeaders().setIfNoneMatch(etag);
+            }
+        }, response -> {
+            final int statusCode = response.getRawStatusCode();
+            LOGGER.info("GET " + uri + " - HTTP/1.? " + statusCode + " " + response.getStatusText());
+            if (statusCode == HttpStatus.NOT_MODIFIED.value()) {
+                return new Conditional<T>(null, etag, true);
+            }
+            if (statusCode > HttpStatus.OK.value()) {
+                return new Conditional<T>(null, null, false);
+            }
+            try (InputStream body = response.getBody()) {
+                return new Conditional<>(body != null ? extractor.extract(body) : null, response.getHeaders().getETag(), false);
+            }
+        });
+    }
+
     @Override
     public ResponseEntity<String> post(String uriPath, String body) throws URISyntaxException, RestClientException {
         final URI uri = new URI(uriWithProto(uriPath));
@@ -109,15 +257,34 @@ public class FarmClient implements CommonHttpRequester {
     public ResponseEntity<String> delete(String uriPath, String body) throws URISyntaxException, IOException {
         final URI uri = new URI(uriWithProto(uriPath));
         final HttpEntityEnclosingRequest httpRequest = httpDeleteRequestWithBodyFactory(uri, new StringEntity(body));
-        final CloseableHttpClient httpClient = HttpClients.custom().setDefaultRequestConfig(defaultRequestConfig).build();
-        final HttpResponse httpResponse = httpClient.execute(new HttpHost(getHost(uri), getPort(uri)), httpRequest);
-        httpClient.close();
-
-        final ResponseEntity<String> response = convertResponse(httpResponse);
+        final ResponseEntity<String> response;
+        try (CloseableHttpResponse httpResponse = httpClient.execute(new HttpHost(getHost(uri), getPort(uri)), httpRequest)) {
+            response = convertResponse(httpResponse);
+        }
         logFormatted(convertRequest(httpRequest), response);
         return response;
     }
 
+    @Override
+    public CompletableFuture<ResponseEntity<String>> getAsync(String uriPath) {
+        return executeAsync(HttpMethod.GET, uriPath, null);
+    }
+
+    @Override
+    public CompletableFuture<ResponseEntity<String>> postAsync(String uriPath, String body) {
+        return executeAsync(HttpMethod.POST, uriPath, body);
+    }
+
+    @Override
+    public CompletableFuture<ResponseEntity<String>> putAsync(String uriPath, String body) {
+        return executeAsync(HttpMethod.PUT, uriPath, body);
+    }
+
+    @Override
+    public CompletableFuture<ResponseEntity<String>> deleteAsync(String uriPath, String body) {
+        return executeAsync(HttpMethod.DELETE, uriPath, body);
+    }
+
     @Override
     public boolean isStatusCodeEqualOrLessThan(final ResponseEntity<String> response, int status) {
         return response.getStatusCode().value() <= status;
@@ -132,6 +299,58 @@ public class FarmClient implements CommonHttpRequester {
         return !uriPath.startsWith("http") ? "http://" + uriPath : uriPath;
     }
 
+    private CompletableFuture<ResponseEntity<String>> executeAsync(final HttpMethod method, String uriPath, String body) {
+        final CompletableFuture<ResponseEntity<String>> future = new CompletableFuture<>();
+        try {
+            final URI uri = new URI(uriWithProto(uriPath));
+            final RequestEntity<String> request = new RequestEntity<>(body, method, uri);
+            asyncHttpClient.execute(asyncRequestFactory(method, uri, body), new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse httpResponse) {
+                    try {
+                        final ResponseEntity<String> response = convertResponse(httpResponse);
+                        logFormatted(request, response);
+                        future.complete(response);
+                    } catch (IOException e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    future.completeExceptionally(e);
+                }
+
+                @Override
+                public void cancelled() {
+                    future.cancel(false);
+                }
+            });
+        } catch (URISyntaxException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private HttpUriRequest asyncRequestFactory(final HttpMethod method, final URI uri, String body) {
+        final HttpEntityEnclosingRequestBase httpRequest;
+        switch (method) {
+            case POST:
+                httpRequest = new HttpPost(uri);
+                break;
+            case PUT:
+                httpRequest = new HttpPut(uri);
+                break;
+            case DELETE:
+                httpRequest = new HttpDeleteWithBody(uri);
+                break;
+            default:
+                return new HttpGet(uri);
+        }
+        httpRequest.setEntity(new StringEntity(body != null ? body : "", ContentType.APPLICATION_JSON));
+        return httpRequest;
+    }
+
     private HttpEntityEnclosingRequest httpDeleteRequestWithBodyFactory(final URI uri, StringEntity entity) {
         final HttpEntityEnclosingRequest httpRequest = new HttpDeleteWithBody(uri);
         httpRequest.setEntity(entity);
@@ -150,8 +369,8 @@ public class FarmClient implements CommonHttpRequester {
     }
 
     private ResponseEntity<String> convertResponse(final HttpResponse response) throws IOException {
-        final InputStream content = response.getEntity().getContent();
-        final String body = IOUtils.toString(content);
+        final HttpEntity entity = response.getEntity();
+        final String body = entity != null ? EntityUtils.toString(entity) : "";
         final MultiValueMap<String, String> headers = getHeaders(response);
         final HttpStatus statusCode = EnumSet.allOf(HttpStatus.class)
                                              .stream()
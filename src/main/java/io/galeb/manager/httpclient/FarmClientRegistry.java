@@ -0,0 +1,66 @@
+/*
+ *   Galeb - Load Balance as a Service Plataform
+ *
+ *   Copyright (C) 2014-2016 Globo.com
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package io.galeb.manager.httpclient;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One pooled {@link FarmClient} per farm API, so keep-alive connections
+ * to an API are reused across syncs and fixes instead of reopened per request.
+ * Farms may share an API, so clients are never closed on behalf of a farm:
+ * a client unused for io.galeb.http.clientIdleTimeout ms (default 10 min,
+ * well above the read timeout) is closed and dropped by the idle evictor.
+ */
+public class FarmClientRegistry {
+
+    private static final long CLIENT_IDLE_TIMEOUT = Long.parseLong(System.getProperty("io.galeb.http.clientIdleTimeout", "600000"));
+
+    private static final ConcurrentMap<String, FarmClient> CLIENTS = new ConcurrentHashMap<>();
+
+    static {
+        long sweepPeriod = Math.max(1000L, CLIENT_IDLE_TIMEOUT / 4);
+        FarmClient.idleEvictor().scheduleWithFixedDelay(FarmClientRegistry::closeIdleClients,
+                sweepPeriod, sweepPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    private FarmClientRegistry() {
+        // static only
+    }
+
+    public static FarmClient get(String api) {
+        while (true) {
+            final FarmClient farmClient = CLIENTS.computeIfAbsent(api, k -> new FarmClient());
+            if (farmClient.touch()) {
+                return farmClient;
+            }
+            CLIENTS.remove(api, farmClient);
+        }
+    }
+
+    private static void closeIdleClients() {
+        CLIENTS.forEach((api, farmClient) -> {
+            if (farmClient.closeIfIdle(CLIENT_IDLE_TIMEOUT)) {
+                CLIENTS.remove(api, farmClient);
+            }
+        });
+    }
+
+}
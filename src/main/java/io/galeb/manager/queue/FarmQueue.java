@@ -20,6 +20,7 @@
 
 package io.galeb.manager.queue;
 
+import io.galeb.manager.engine.service.FarmShards;
 import io.galeb.manager.entity.Farm;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,6 +28,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Service
 public class FarmQueue extends AbstractEnqueuer<Farm> {
 
@@ -36,11 +40,16 @@ public class FarmQueue extends AbstractEnqueuer<Farm> {
     public static final String QUEUE_SYNC   = "queue-farm-sync";
     public static final String QUEUE_RELOAD = "queue-farm-reload";
 
+    public static final String OWNER_NODE_PROP = "ownerNode";
+
     private static final Log LOGGER = LogFactory.getLog(FarmQueue.class);
 
     @Autowired
     private JmsTemplate template;
 
+    @Autowired(required = false)
+    private FarmShards farmShards;
+
     public FarmQueue() {
         super(LOGGER);
         setQueueCreateName(QUEUE_CREATE);
@@ -49,6 +58,17 @@ public class FarmQueue extends AbstractEnqueuer<Farm> {
         setQueueSyncName(QUEUE_SYNC);
     }
 
+    /**
+     * Sends to the node owning the farm: the message carries its node id and only
+     * that node's listener selects it (see FarmOwnerListeners). Untagged when farms
+     * aren't sharded, so any node takes it.
+     */
+    public void sendToOwner(String queue, Farm farm, final Map<String, String> properties, String uniqueId) {
+        final Map<String, String> routed = new HashMap<>(properties);
+        routed.put(OWNER_NODE_PROP, farmShards != null ? farmShards.ownerOf(farm.getId()) : null);
+        sendToQueue(queue, farm, routed, uniqueId);
+    }
+
     @Override
     protected JmsTemplate template() {
         return template;
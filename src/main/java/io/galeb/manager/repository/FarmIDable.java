@@ -3,8 +3,24 @@ package io.galeb.manager.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface FarmIDable<T> {
 
     Page<T> findByFarmId(long id, Pageable pageable);
 
+    /**
+     * Rows of [id, name, hash, ...] with just the columns the farm diff compares,
+     * one row per parent/alias combination (see LocalEntity).
+     */
+    List<Object[]> findDiffTuplesByFarmId(long id);
+
+    Page<Long> findIdsByFarmId(long id, Pageable pageable);
+
+    /**
+     * Same rows as findDiffTuplesByFarmId, only for the given entity ids.
+     */
+    List<Object[]> findDiffTuplesByFarmIdAndIdIn(long id, Collection<Long> ids);
+
 }
@@ -28,10 +28,14 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
+
 import static io.galeb.manager.repository.CommonJpaFilters.*;
 
 @PreAuthorize("isFullyAuthenticated()")
@@ -53,6 +57,12 @@ public interface PoolRepository extends JpaRepositoryWithFindByName<Pool, Long>,
 
     String QUERY_FINDALL = QUERY_PREFIX + SECURITY_FILTER + " OR " + IS_GLOBAL_FILTER;
 
+    String QUERY_DIFF_TUPLES_BY_FARMID = "SELECT e.id, e.name, e.hash FROM Pool e WHERE e.farmId = :id";
+
+    String QUERY_DIFF_TUPLES_BY_FARMID_AND_IDS = QUERY_DIFF_TUPLES_BY_FARMID + " AND e.id IN :ids";
+
+    String QUERY_IDS_BY_FARMID = "SELECT e.id FROM Pool e WHERE e.farmId = :id";
+
     String QUERY_FINDBYNAMECONTAINING = NATIVE_QUERY_PREFIX +
                         "WHERE (e.name LIKE concat('%', :name, '%')) AND " +
                         "(" + SECURITY_FILTER + " OR " + IS_GLOBAL_FILTER + ")"
@@ -75,6 +85,24 @@ public interface PoolRepository extends JpaRepositoryWithFindByName<Pool, Long>,
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     Page<Pool> findByFarmId(@Param("id") long id, Pageable pageable);
 
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RestResource(exported = false)
+    @Query(QUERY_DIFF_TUPLES_BY_FARMID)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    List<Object[]> findDiffTuplesByFarmId(@Param("id") long id);
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RestResource(exported = false)
+    @Query(QUERY_IDS_BY_FARMID)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    Page<Long> findIdsByFarmId(@Param("id") long id, Pageable pageable);
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RestResource(exported = false)
+    @Query(QUERY_DIFF_TUPLES_BY_FARMID_AND_IDS)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    List<Object[]> findDiffTuplesByFarmIdAndIdIn(@Param("id") long id, @Param("ids") Collection<Long> ids);
+
     @Modifying
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     Pool getNoParent();
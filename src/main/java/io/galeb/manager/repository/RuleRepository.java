@@ -23,12 +23,16 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import io.galeb.manager.entity.Rule;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
+
 import static io.galeb.manager.repository.CommonJpaFilters.IS_GLOBAL_FILTER;
 import static io.galeb.manager.repository.CommonJpaFilters.SECURITY_FILTER;
 
@@ -58,6 +62,13 @@ public interface RuleRepository extends JpaRepositoryWithFindByName<Rule, Long>,
 
     String QUERY_FINDALL = QUERY_PREFIX + SECURITY_FILTER + " OR " + IS_GLOBAL_FILTER;
 
+    String QUERY_DIFF_TUPLES_BY_FARMID = "SELECT e.id, e.name, e.hash, v.name, a FROM Rule e LEFT JOIN e.parents v LEFT JOIN v.aliases a " +
+            "WHERE e.farmId = :id";
+
+    String QUERY_DIFF_TUPLES_BY_FARMID_AND_IDS = QUERY_DIFF_TUPLES_BY_FARMID + " AND e.id IN :ids";
+
+    String QUERY_IDS_BY_FARMID = "SELECT e.id FROM Rule e WHERE e.farmId = :id";
+
     String QUERY_FINDBYPOOLNAME = QUERY_PREFIX + "e.pool.name = :name AND " +
                         "(" + SECURITY_FILTER + " OR " + IS_GLOBAL_FILTER + ")";
 
@@ -83,6 +94,24 @@ public interface RuleRepository extends JpaRepositoryWithFindByName<Rule, Long>,
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     Page<Rule> findByFarmId(@Param("id") long id, Pageable pageable);
 
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RestResource(exported = false)
+    @Query(QUERY_DIFF_TUPLES_BY_FARMID)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    List<Object[]> findDiffTuplesByFarmId(@Param("id") long id);
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RestResource(exported = false)
+    @Query(QUERY_IDS_BY_FARMID)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    Page<Long> findIdsByFarmId(@Param("id") long id, Pageable pageable);
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RestResource(exported = false)
+    @Query(QUERY_DIFF_TUPLES_BY_FARMID_AND_IDS)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    List<Object[]> findDiffTuplesByFarmIdAndIdIn(@Param("id") long id, @Param("ids") Collection<Long> ids);
+
     @Query(value = QUERY_FINDBYNAMECONTAINING, nativeQuery = true)
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     Iterable<Rule> findByNameContaining(@Param("name") String name);
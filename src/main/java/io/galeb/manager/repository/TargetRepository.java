@@ -23,12 +23,16 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import io.galeb.manager.entity.Target;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
+
 import static io.galeb.manager.repository.CommonJpaFilters.*;
 
 @PreAuthorize("isFullyAuthenticated()")
@@ -48,6 +52,12 @@ public interface TargetRepository extends JpaRepositoryWithFindByName<Target, Lo
 
     String QUERY_FINDALL = QUERY_PREFIX + SECURITY_FILTER + " OR " + IS_GLOBAL_FILTER;
 
+    String QUERY_DIFF_TUPLES_BY_FARMID = "SELECT e.id, e.name, e.hash, p.name FROM Target e LEFT JOIN e.parent p WHERE e.farmId = :id";
+
+    String QUERY_DIFF_TUPLES_BY_FARMID_AND_IDS = QUERY_DIFF_TUPLES_BY_FARMID + " AND e.id IN :ids";
+
+    String QUERY_IDS_BY_FARMID = "SELECT e.id FROM Target e WHERE e.farmId = :id";
+
     String QUERY_FINDBYNAMECONTAINING = NATIVE_QUERY_PREFIX +
                         "WHERE (e.name LIKE concat('%', :name, '%')) AND " +
                         "(" + SECURITY_FILTER + " OR " + IS_GLOBAL_FILTER + ")"
@@ -81,6 +91,24 @@ public interface TargetRepository extends JpaRepositoryWithFindByName<Target, Lo
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     Page<Target> findByFarmId(@Param("id") long id, Pageable pageable);
 
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RestResource(exported = false)
+    @Query(QUERY_DIFF_TUPLES_BY_FARMID)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    List<Object[]> findDiffTuplesByFarmId(@Param("id") long id);
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RestResource(exported = false)
+    @Query(QUERY_IDS_BY_FARMID)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    Page<Long> findIdsByFarmId(@Param("id") long id, Pageable pageable);
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RestResource(exported = false)
+    @Query(QUERY_DIFF_TUPLES_BY_FARMID_AND_IDS)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    List<Object[]> findDiffTuplesByFarmIdAndIdIn(@Param("id") long id, @Param("ids") Collection<Long> ids);
+
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     Page<Target> findByParentName(@Param("name") String name, Pageable pageable);
 
@@ -24,11 +24,13 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import io.galeb.manager.entity.VirtualHost;
 import org.springframework.transaction.annotation.*;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -50,6 +52,12 @@ public interface VirtualHostRepository extends JpaRepositoryWithFindByName<Virtu
 
     String QUERY_FINDALL = QUERY_PREFIX + SECURITY_FILTER;
 
+    String QUERY_DIFF_TUPLES_BY_FARMID = "SELECT e.id, e.name, e.hash, a FROM VirtualHost e LEFT JOIN e.aliases a WHERE e.farmId = :id";
+
+    String QUERY_DIFF_TUPLES_BY_FARMID_AND_IDS = QUERY_DIFF_TUPLES_BY_FARMID + " AND e.id IN :ids";
+
+    String QUERY_IDS_BY_FARMID = "SELECT e.id FROM VirtualHost e WHERE e.farmId = :id";
+
     String QUERY_FINDBYNAMECONTAINING = NATIVE_QUERY_PREFIX + NATIVE_QUERY_PROJECT_TO_ACCOUNT
             + "where (e.name like concat('%', :name, '%')) and " + SECURITY_FILTER
             + " ORDER BY e.name";
@@ -71,6 +79,24 @@ public interface VirtualHostRepository extends JpaRepositoryWithFindByName<Virtu
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     Page<VirtualHost> findByFarmId(@Param("id") long id, Pageable pageable);
 
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RestResource(exported = false)
+    @Query(QUERY_DIFF_TUPLES_BY_FARMID)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    List<Object[]> findDiffTuplesByFarmId(@Param("id") long id);
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RestResource(exported = false)
+    @Query(QUERY_IDS_BY_FARMID)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    Page<Long> findIdsByFarmId(@Param("id") long id, Pageable pageable);
+
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @RestResource(exported = false)
+    @Query(QUERY_DIFF_TUPLES_BY_FARMID_AND_IDS)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    List<Object[]> findDiffTuplesByFarmIdAndIdIn(@Param("id") long id, @Param("ids") Collection<Long> ids);
+
     @Query(value = QUERY_FINDBYNAMECONTAINING, nativeQuery = true)
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     Iterable<VirtualHost> findByNameContaining(@Param("name") String name);
@@ -0,0 +1,161 @@
+/*
+ * Galeb - Load Balance as a Service Plataform
+ *
+ * Copyright (C) 2014-2016 Globo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ */
+package io.galeb.manager.scheduler;
+
+import io.galeb.manager.engine.util.SyncExecutors;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Runs the per-farm sync checks on its own worker pool instead of the common
+ * ForkJoinPool. Each farm holds at most one slot (queued or running), starts
+ * with a random jitter so farms don't fire on the same tick edge, and is
+ * dropped if it couldn't start before its deadline; the next tick retries it.
+ */
+@Component
+public class FarmSyncScheduler implements PublicMetrics {
+
+    private static final Log LOGGER = LogFactory.getLog(FarmSyncScheduler.class);
+
+    private static final String METRIC_PREFIX = "galeb.sync.scheduler.";
+
+    private static final int THREADS = SyncExecutors.threadsFromProperty("io.galeb.sync.sched.threads", 8);
+    private static final long MAX_JITTER = Long.parseLong(System.getProperty("io.galeb.sync.sched.jitter", "1000"));
+    private static final long DEADLINE = Long.parseLong(System.getProperty("io.galeb.sync.sched.deadline", "5000"));
+
+    private final ScheduledThreadPoolExecutor executor = SyncExecutors.newScheduledDaemonPool("farm-sync-sched-", THREADS);
+    private final Map<Long, Long> inFlight = new ConcurrentHashMap<>();
+    private final Map<Long, Long> latenessByFarm = new ConcurrentHashMap<>();
+    private final Map<Long, Runnable> rerun = new ConcurrentHashMap<>();
+    private final AtomicLong skipped = new AtomicLong(0L);
+    private final AtomicLong coalesced = new AtomicLong(0L);
+    private final AtomicLong missed = new AtomicLong(0L);
+
+    /**
+     * Schedules a check of the farm unless one is still queued or running.
+     *
+     * @return false if the farm already holds a slot
+     */
+    public boolean submit(long farmId, final Runnable task) {
+        return submit(farmId, task, MAX_JITTER > 0 ? ThreadLocalRandom.current().nextLong(MAX_JITTER) : 0L);
+    }
+
+    /**
+     * Same as {@link #submit(long, Runnable)}, starting after the given delay instead of a random jitter.
+     */
+    public boolean submit(long farmId, final Runnable task, long delay) {
+        final long submittedAt = currentTimeMillis();
+        if (inFlight.putIfAbsent(farmId, submittedAt) != null) {
+            skipped.incrementAndGet();
+            return false;
+        }
+        try {
+            executor.schedule(() -> run(farmId, submittedAt + delay, task), delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            inFlight.remove(farmId);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Schedules a check of the farm right away. If the farm already holds a slot,
+     * the check is not dropped but coalesced: it runs once as soon as the current
+     * slot is freed, however many times it was requested meanwhile.
+     */
+    public void submitNow(long farmId, final Runnable task) {
+        rerun.put(farmId, task);
+        if (submit(farmId, task, 0L)) {
+            rerun.remove(farmId, task);
+        } else {
+            coalesced.incrementAndGet();
+        }
+    }
+
+    private void run(long farmId, long expectedStart, final Runnable task) {
+        try {
+            final long lateness = Math.max(0L, currentTimeMillis() - expectedStart);
+            latenessByFarm.put(farmId, lateness);
+            if (lateness > DEADLINE) {
+                missed.incrementAndGet();
+                LOGGER.warn("Farm " + farmId + " sync check missed its deadline (" + lateness + " ms late). Skipping.");
+                return;
+            }
+            task.run();
+        } catch (Exception e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+        } finally {
+            inFlight.remove(farmId);
+            final Runnable next = rerun.remove(farmId);
+            if (next != null && !executor.isShutdown()) {
+                submit(farmId, next, 0L);
+            }
+        }
+    }
+
+    public int queueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public Long latenessOf(long farmId) {
+        return latenessByFarm.get(farmId);
+    }
+
+    public void retainFarms(final Set<Long> farmIds) {
+        latenessByFarm.keySet().retainAll(farmIds);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "queue", queueDepth()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "active", executor.getActiveCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "inflight", inFlight.size()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "skipped", skipped.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "missed", missed.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "coalesced", coalesced.get()));
+        latenessByFarm.forEach((farmId, lateness) ->
+                metrics.add(new Metric<>(METRIC_PREFIX + "lateness.farm" + farmId, lateness)));
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Galeb - Load Balance as a Service Plataform
+ *
+ * Copyright (C) 2014-2016 Globo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ */
+package io.galeb.manager.scheduler;
+
+import io.galeb.manager.engine.util.SyncExecutors;
+import io.galeb.manager.entity.Farm;
+import io.galeb.manager.repository.FarmRepository;
+import io.galeb.manager.scheduler.tasks.SyncFarms;
+import io.galeb.manager.security.services.SystemUserService;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wakes the sync check of a farm right after a user change instead of waiting
+ * for the next SyncFarms tick. Wakes for the same farm within the debounce
+ * window are coalesced into a single check.
+ */
+@Component
+public class FarmSyncTrigger {
+
+    private static final Log LOGGER = LogFactory.getLog(FarmSyncTrigger.class);
+
+    private static final long DEBOUNCE = Long.parseLong(System.getProperty("io.galeb.sync.trigger.debounce", "200"));
+
+    @Autowired private FarmRepository farmRepository;
+    @Autowired private SyncFarms      syncFarms;
+
+    private final ScheduledThreadPoolExecutor executor = SyncExecutors.newScheduledDaemonPool("farm-sync-trigger-", 1);
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    public void wake(long farmId) {
+        if (farmId < 0 || !pending.add(farmId)) {
+            return;
+        }
+        try {
+            executor.schedule(() -> fire(farmId), DEBOUNCE, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            pending.remove(farmId);
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    private void fire(long farmId) {
+        pending.remove(farmId);
+        try {
+            SystemUserService.runAs();
+            final Farm farm = farmRepository.findOne(farmId);
+            if (farm != null) {
+                syncFarms.syncNow(farm);
+            }
+        } catch (Exception e) {
+            LOGGER.error(ExceptionUtils.getStackTrace(e));
+        } finally {
+            SystemUserService.clearContext();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -23,18 +23,21 @@ package io.galeb.manager.scheduler.tasks;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import io.galeb.manager.common.CommandCountDown;
 import io.galeb.manager.common.StatusDistributed;
+import io.galeb.manager.common.SyncInterval;
+import io.galeb.manager.engine.service.FarmShards;
 import io.galeb.manager.engine.service.LockerManager;
-import io.galeb.manager.engine.util.CounterDownLatch;
+import io.galeb.manager.engine.service.SyncJournal;
+import io.galeb.manager.engine.util.FixTracker;
+import io.galeb.manager.engine.util.SyncExecutors;
 import io.galeb.manager.entity.Farm;
 
-import io.galeb.manager.entity.LockStatus;
 import io.galeb.manager.queue.FarmQueue;
 import io.galeb.manager.queue.JmsConfiguration;
 import io.galeb.manager.repository.FarmRepository;
+import io.galeb.manager.scheduler.FarmSyncScheduler;
 import io.galeb.manager.scheduler.SchedulerConfiguration;
 import io.galeb.manager.security.services.SystemUserService;
 import io.galeb.manager.security.user.CurrentUser;
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -44,11 +47,14 @@ import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 import static java.lang.System.getenv;
 import static java.lang.System.getProperty;
@@ -62,13 +68,16 @@ public class SyncFarms {
 
     @Autowired private FarmRepository        farmRepository;
     @Autowired private FarmQueue             farmQueue;
+    @Autowired private FarmSyncScheduler     farmSyncScheduler;
+
+    @Autowired private SyncJournal           syncJournal;
+    @Autowired private FarmShards            farmShards;
 
     private StatusDistributed statusDist = new StatusDistributed();
+    private SyncInterval syncInterval = new SyncInterval();
 
     private final LockerManager lockerManager = new LockerManager();
 
-    private final long timeoutSyncFarm = Long.parseLong(getProperty(SchedulerConfiguration.GALEB_TIMEOUT_SYNC_FARM, String.valueOf(Long.MAX_VALUE)));
-
     private boolean disableQueue = Boolean.valueOf(
             getProperty(JmsConfiguration.DISABLE_QUEUE,
                     Boolean.toString(false)));
@@ -78,8 +87,8 @@ public class SyncFarms {
                     getenv(SchedulerConfiguration.GALEB_DISABLE_SCHED)));
 
     private static Map<String, String[]> apisToSync = new ConcurrentHashMap<>();
-    private static Map<String, Long> counterWithoutCommandCounterDown = new ConcurrentHashMap<>();
-    private static int tryiesTimeoutSyncFarm = 0;
+    private static Map<Long, CompletableFuture<Void>> fixesWatched = new ConcurrentHashMap<>();
+    private static final ExecutorService RELEASE_EXECUTOR = SyncExecutors.newFixedDaemonPool("sync-farms-release-", 1);
     private static int timeToAvoidReleaseToTest = 0;
 
     @Scheduled(fixedRate = SCHED_INTERVAL)
@@ -95,16 +104,17 @@ public class SyncFarms {
             Authentication currentUser = CurrentUser.getCurrentAuth();
             SystemUserService.runAs();
 
-            farmRepository.findAll().stream()
-                    .parallel()
-                    .forEach(farm ->
-                    {
-                        try {
-                            syncFarm(farm);
-                        } catch (Exception e) {
-                            LOGGER.error(ExceptionUtils.getStackTrace(e));
-                        }
-                    });
+            final List<Farm> farms = farmRepository.findAll().stream()
+                    .filter(farm -> farmShards.isLocal(farm.getId()))
+                    .collect(Collectors.toList());
+            farms.forEach(farm -> farmSyncScheduler.submit(farm.getId(), () -> {
+                try {
+                    syncFarm(farm);
+                } catch (Exception e) {
+                    LOGGER.error(ExceptionUtils.getStackTrace(e));
+                }
+            }));
+            farmSyncScheduler.retainFarms(farms.stream().map(Farm::getId).collect(Collectors.toSet()));
 
             SystemUserService.runAs(currentUser);
         } catch (Exception e) {
@@ -114,105 +124,141 @@ public class SyncFarms {
         }
     }
 
+    /**
+     * Checks the farm right away (FarmSyncTrigger). If a check of it is already
+     * queued or running, one more check runs as soon as it is done. Sharded as the
+     * scheduled task: on the other nodes the change stays in the journal and the
+     * owner sees it on its next tick.
+     */
+    public void syncNow(Farm farm) {
+        if (disableSched || !farmShards.isLocal(farm.getId())) {
+            return;
+        }
+        farmSyncScheduler.submitNow(farm.getId(), () -> {
+            try {
+                syncFarm(farm);
+            } catch (Exception e) {
+                LOGGER.error(ExceptionUtils.getStackTrace(e));
+            }
+        });
+    }
+
     private void syncFarm(Farm farm) throws JsonProcessingException {
 
         String farmStatusMsgPrefix = "FARM STATUS - " + farm.idName() + " - ";
         String[] apis = apisToSync.getOrDefault(farm.idName(), farm.getApi().split(","));
 
-        if (checkFarmWithSlowOp(apis, farm.idName())) {
-            LOGGER.error(farmStatusMsgPrefix + " POSSIBLE CLUSTER LOCK! RELEASING THE LOCK...");
-            release(farm, apis);
-            return;
-        }
-
         Boolean containsLock = lockerManager.contains(farm.idName());
         if (containsLock != null && !containsLock) {
+            if (hasLocalFixes(farm, apis)) {
+                LOGGER.warn(farmStatusMsgPrefix + "Lease expired or lost. Dropping the local sync state.");
+                release(farm, apis);
+            }
             LOGGER.info(farmStatusMsgPrefix + "Updated apis to sync because the lock is released for this instance.");
             apis = farm.getApi().split(",");
             apisToSync.put(farm.idName(), apis);
         }
 
-        CommandCountDown comm = CommandCountDown.getCommandApplied(apis);
+        CommandCountDown comm = CommandCountDown.getCommandApplied(farm.getId(), apis);
         switch (comm) {
             case SEND_TO_QUEUE:
-                if (farm.isAutoReload() && !disableQueue) {
-                    farmQueue.sendToQueue(FarmQueue.QUEUE_SYNC, farm, "ID:farm-" + farm.getId() + "-" + System.currentTimeMillis());
-                } else {
-                    LOGGER.warn(farmStatusMsgPrefix + "Check & Sync DISABLED (QUEUE_SYNC or Auto Reload is FALSE): " + farm.getName());
-                }
-                releaseCounterWithoutCommand(farm);
+                sendToQueueIfDue(farm, farmStatusMsgPrefix);
                 break;
             case RELEASE:
                 release(farm, apis);
-                releaseCounterWithoutCommand(farm);
+                if (syncJournal.hasChanges(farm.getId())) {
+                    // changed since the last round: check now instead of on the next tick
+                    sendToQueueIfDue(farm, farmStatusMsgPrefix);
+                }
                 break;
             case STILL_SYNCHRONIZING:
-                releaseCounterWithoutCommand(farm);
+                if (isProgressing(farm, apis) && !lockerManager.renew(farm.idName())) {
+                    LOGGER.warn(farmStatusMsgPrefix + "Lease lost while synchronizing Farm " + farm.getName());
+                }
+                releaseWhenFixed(farm, apis);
                 Arrays.stream(apis).forEach(api -> {
                     String farmFull = farm.getName() + " [ " + api + " ] ";
-                    final Integer latchCount = CounterDownLatch.get(api);
+                    final Integer latchCount = FixTracker.pending(farm.getId(), api);
                     LOGGER.warn(farmStatusMsgPrefix + "Still synchronizing Farm " + farmFull + " (remains " + latchCount + " tasks)");
                 });
                 break;
             default:
-                verifyCounterWithoutCommand(farm, apis);
+                logWithoutCommand(farm, apis);
         }
         updateStatusDistributed(farm, apis);
     }
 
+    private void sendToQueueIfDue(Farm farm, String farmStatusMsgPrefix) {
+        if (!isSyncDue(farm)) {
+            LOGGER.debug(farmStatusMsgPrefix + "Next check in up to " + syncInterval.intervalOf(farm.idName()) + " ms");
+        } else if (farm.isAutoReload() && !disableQueue) {
+            farmQueue.sendToOwner(FarmQueue.QUEUE_SYNC, farm, Collections.emptyMap(),
+                    "ID:farm-" + farm.getId() + "-" + System.currentTimeMillis());
+        } else {
+            LOGGER.warn(farmStatusMsgPrefix + "Check & Sync DISABLED (QUEUE_SYNC or Auto Reload is FALSE): " + farm.getName());
+        }
+    }
+
+    private boolean isSyncDue(Farm farm) {
+        if (syncJournal.hasChanges(farm.getId())) {
+            syncInterval.changed(farm.idName());
+            return true;
+        }
+        return syncInterval.isDue(farm.idName());
+    }
+
     private void release(Farm farm, String[] apis) {
-        lockerManager.release(farm.idName(), apis);
+        lockerManager.release(farm, apis);
         statusDist.updateNewStatus(farm.idName(), false);
     }
 
-    private boolean checkFarmWithSlowOp(String[] apis, String idFarm) {
-        final AtomicBoolean applied = new AtomicBoolean(false);
-        if (apis != null) {
-            Arrays.stream(apis).forEach(api -> {
-                applied.set(applied.get() || (checkTimeoutCounterLatch(api) || checkLockFarmWithoutCounter(api, idFarm)));
-            });
+    /**
+     * Releases the farm as soon as its last fix is done, instead of waiting for
+     * the next tick. One watcher per farm; a new sync round completes the future
+     * of the round it replaces, so a stale watcher just finds it still running.
+     */
+    private void releaseWhenFixed(Farm farm, String[] apis) {
+        final CompletableFuture<Void> fixes = FixTracker.whenDone(farm.getId(), apis);
+        if (fixesWatched.putIfAbsent(farm.getId(), fixes) == null) {
+            fixes.thenRunAsync(() -> {
+                fixesWatched.remove(farm.getId(), fixes);
+                if (CommandCountDown.getCommandApplied(farm.getId(), apis) == CommandCountDown.RELEASE) {
+                    LOGGER.info("FARM STATUS - " + farm.idName() + " - All fixes done. Releasing " + farm.getName());
+                    release(farm, apis);
+                }
+            }, RELEASE_EXECUTOR);
         }
-        return applied.get();
     }
 
-    private boolean checkLockFarmWithoutCounter(String api, String idFarm) {
-        Optional<LockStatus> lock = statusDist.getLockStatusLocal(idFarm);
-        boolean isLock = lock.isPresent() && lock.get().isHasLock();
-        return !CounterDownLatch.checkContainsKey(api) && isLock;
+    private boolean hasLocalFixes(Farm farm, String[] apis) {
+        return Arrays.stream(apis).anyMatch(api -> FixTracker.contains(farm.getId(), api));
     }
 
-    private boolean checkTimeoutCounterLatch(String api) {
-        Long timeApi = CounterDownLatch.getTimeOf(api);
-        return timeApi != null && (currentTimeMillis() - timeApi) > timeoutSyncFarm;
+    /**
+     * The lease is only renewed while fixes keep landing; a stalled round lets it
+     * expire, and the next tick drops its local state.
+     */
+    private boolean isProgressing(Farm farm, String[] apis) {
+        final long now = currentTimeMillis();
+        return Arrays.stream(apis)
+                .map(api -> FixTracker.lastChangeOf(farm.getId(), api))
+                .anyMatch(lastChange -> lastChange != null && now - lastChange < lockerManager.leaseTtl());
     }
 
-    private void verifyCounterWithoutCommand(Farm farm, String[] apis) {
+    private void logWithoutCommand(Farm farm, String[] apis) {
         Arrays.stream(apis).forEach(api -> {
-            final Integer latchCount = CounterDownLatch.get(api);
+            final Integer latchCount = FixTracker.pending(farm.getId(), api);
             String farmFull = farm.getName() + " [ " + api + " ] ";
             LOGGER.warn("Without command to execute. Skip the sync farm " + farmFull + " (remains " + latchCount + " tasks)");
         });
-        Long count = counterWithoutCommandCounterDown.getOrDefault(farm.idName(), 0L);
-        if (count == 6) {
-            LOGGER.warn("Force releasing lock: Farm " + farm.getName() + " and removing CountDownLatch of " + Arrays.toString(ArrayUtils.toArray(apis)));
-            lockerManager.release(farm.idName(), apis);
-            releaseCounterWithoutCommand(farm);
-        } else {
-            ++count;
-            counterWithoutCommandCounterDown.put(farm.idName(), count);
-        }
-    }
-
-    private void releaseCounterWithoutCommand(Farm farm) {
-        counterWithoutCommandCounterDown.remove(farm.idName());
     }
 
     private void updateStatusDistributed(Farm farm, String[] apis) {
         final Map<String, Integer> countDownLatchOfApis = new HashMap<>();
         Arrays.stream(apis).forEach(api -> {
-            final Integer latchCount = CounterDownLatch.get(api);
+            final Integer latchCount = FixTracker.pending(farm.getId(), api);
             if (latchCount != null) {
-                final Long timeApi = CounterDownLatch.getTimeOf(api);
+                final Long timeApi = FixTracker.lastChangeOf(farm.getId(), api);
                 if (timeApi != null) {
                     countDownLatchOfApis.put(api,latchCount);
                 }
@@ -20,11 +20,15 @@ package io.galeb.manager.engine;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import io.galeb.manager.common.Properties;
+import io.galeb.manager.engine.driver.DiffEntry;
 import io.galeb.manager.engine.driver.Driver;
 import io.galeb.manager.engine.driver.DriverBuilder;
+import io.galeb.manager.engine.driver.EntityKey;
+import io.galeb.manager.engine.driver.RemoteEntity;
 import io.galeb.manager.engine.driver.impl.GalebV32Driver;
 import io.galeb.manager.engine.listeners.FarmEngine;
 import io.galeb.manager.engine.listeners.VirtualHostEngine;
+import io.galeb.manager.engine.util.LocalEntity;
 import io.galeb.manager.entity.*;
 import io.galeb.manager.httpclient.FakeFarmClient;
 import io.galeb.manager.test.factory.FarmFactory;
@@ -37,6 +41,8 @@ import org.springframework.util.Assert;
 
 import java.util.*;
 
+import static io.galeb.manager.engine.driver.Driver.ActionOnDiff.REMOVE;
+
 public class FarmDriverTest {
 
     private static final Log LOGGER = LogFactory.getLog(GalebV32Driver.class);
@@ -105,9 +111,8 @@ public class FarmDriverTest {
         Farm farm = farmFactory.build(FARM_NAME);
         Properties properties = farmEngine.getPropertiesWithEntities(farm, farm.getApi(), entitiesMap);
 
-        Map<String, Map<String, Object>> diff = new HashMap<>();
-        Map<String, Map<String, Map<String, String>>> remoteMultiMap = driver.getAll(properties);
-        diff.putAll(driver.diff(properties, remoteMultiMap));
+        Map<String, Map<EntityKey, RemoteEntity>> remoteMultiMap = driver.getAll(properties);
+        List<DiffEntry> diff = driver.diff(properties, remoteMultiMap);
         int diffSize = diff.size();
 
         Assert.isTrue(diffSize == 0);
@@ -126,11 +131,60 @@ public class FarmDriverTest {
         Properties farmProperties = farmEngine.getPropertiesWithEntities(farm, farm.getApi(), entitiesMap);
         virtuahostEngine.create(virtualhost, virtualhostFactory.jmsHeaderProperties());
 
-        final Map<String, Map<String, Map<String, String>>> remoteMultiMap = driver.getAll(farmProperties);
-        final Map<String, Map<String, Object>> diffMap = driver.diff(farmProperties, remoteMultiMap);
+        final Map<String, Map<EntityKey, RemoteEntity>> remoteMultiMap = driver.getAll(farmProperties);
+        final List<DiffEntry> diffMap = driver.diff(farmProperties, remoteMultiMap);
         int diffSize = diffMap.size();
 
         Assert.isTrue(diffSize == 0);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void diffKeepsAliasesAndRemovesOrphans() throws Exception {
+        logTestedMethod();
+
+        final Map<String, List<?>> entitiesMap = farmFactory.entitiesMap();
+        VirtualHost virtualhost = virtualhostFactory.build(UUID.randomUUID().toString());
+        virtualhost.setAliases(new HashSet<>(Collections.singletonList(UUID.randomUUID().toString())));
+        List<VirtualHost> virtualhosts = (List<VirtualHost>) entitiesMap.get(VirtualHost.class.getSimpleName().toLowerCase());
+        virtualhosts.add(virtualhost);
+        VirtualHost orphan = virtualhostFactory.build(UUID.randomUUID().toString());
+        Farm farm = farmFactory.build(FARM_NAME);
+        Properties farmProperties = farmEngine.getPropertiesWithEntities(farm, farm.getApi(), entitiesMap);
+        virtuahostEngine.create(virtualhost, virtualhostFactory.jmsHeaderProperties());
+        virtuahostEngine.create(orphan, virtualhostFactory.jmsHeaderProperties());
+
+        final Map<String, Map<EntityKey, RemoteEntity>> remoteMultiMap = driver.getAll(farmProperties);
+        final List<DiffEntry> diffMap = driver.diff(farmProperties, remoteMultiMap);
+
+        Assert.isTrue(diffMap.size() == 1);
+        Assert.isTrue(diffMap.stream().allMatch(diffEntry ->
+                diffEntry.getAction() == REMOVE && orphan.getName().equals(diffEntry.getId())));
+    }
+
+    @Test
+    public void diffAcceptsProjectionTuples() throws Exception {
+        logTestedMethod();
+
+        final Map<String, List<?>> entitiesMap = farmFactory.entitiesMap();
+        VirtualHost virtualhost = virtualhostFactory.build(UUID.randomUUID().toString());
+        String alias = UUID.randomUUID().toString();
+        virtualhost.setAliases(new HashSet<>(Collections.singletonList(alias)));
+        List<Object[]> rows = Collections.singletonList(
+                new Object[] { virtualhost.getId(), virtualhost.getName(), virtualhost.getHash(), alias });
+        entitiesMap.put(VirtualHost.class.getSimpleName().toLowerCase(), LocalEntity.fromVirtualHostTuples(rows));
+        VirtualHost orphan = virtualhostFactory.build(UUID.randomUUID().toString());
+        Farm farm = farmFactory.build(FARM_NAME);
+        Properties farmProperties = farmEngine.getPropertiesWithEntities(farm, farm.getApi(), entitiesMap);
+        virtuahostEngine.create(virtualhost, virtualhostFactory.jmsHeaderProperties());
+        virtuahostEngine.create(orphan, virtualhostFactory.jmsHeaderProperties());
+
+        final Map<String, Map<EntityKey, RemoteEntity>> remoteMultiMap = driver.getAll(farmProperties);
+        final List<DiffEntry> diffMap = driver.diff(farmProperties, remoteMultiMap);
+
+        Assert.isTrue(diffMap.size() == 1);
+        Assert.isTrue(diffMap.stream().allMatch(diffEntry ->
+                diffEntry.getAction() == REMOVE && orphan.getName().equals(diffEntry.getId())));
+    }
+
 }
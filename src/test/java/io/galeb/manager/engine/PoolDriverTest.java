@@ -21,6 +21,7 @@ package io.galeb.manager.engine;
 import io.galeb.manager.common.Properties;
 import io.galeb.manager.engine.driver.Driver;
 import io.galeb.manager.engine.driver.DriverBuilder;
+import io.galeb.manager.engine.driver.EntityKey;
 import io.galeb.manager.engine.driver.impl.GalebV32Driver;
 import io.galeb.manager.engine.listeners.PoolEngine;
 import io.galeb.manager.entity.Pool;
@@ -79,19 +80,14 @@ public class PoolDriverTest {
         logTestedMethod();
         Pool pool = poolFactory.build(null);
         Properties properties = poolEngine.makeProperties(pool, jmsHeaders);
-        String api = properties.getOrDefault(API_PROP, "UNDEF").toString();
-        String poolName = pool.getName();
+        EntityKey key = new EntityKey("backendpool", pool.getName(), "");
         boolean resultCreate = driver.create(properties);
-        Map<String, String> map = driver.getAll(properties).get("backendpool").get(api + "/backendpool/" + poolName + "@");
-        String versionStr = map.get("version");
-        int versionOrig = Integer.parseInt(versionStr);
+        int versionOrig = driver.getAll(properties).get("backendpool").get(key).getVersion();
         boolean resultExist = driver.exist(properties);
         pool.updateHash();
         Properties propertiesUpdated = poolEngine.makeProperties(pool, jmsHeaders);
         boolean resultUpdate = driver.update(propertiesUpdated);
-        map = driver.getAll(propertiesUpdated).get("backendpool").get(api + "/backendpool/" + poolName + "@");
-        versionStr = map.get("version");
-        int versionNew = Integer.parseInt(versionStr);
+        int versionNew = driver.getAll(propertiesUpdated).get("backendpool").get(key).getVersion();
         Assert.isTrue(resultCreate && resultExist && resultUpdate && versionNew > versionOrig);
     }
 
@@ -109,4 +105,20 @@ public class PoolDriverTest {
         Assert.isTrue(resultCreate && resultExist && resultRemove && resultNotExist);
     }
 
+    @Test
+    public void existIsAnsweredFromRemoteStateAfterGetAll() throws Exception {
+        logTestedMethod();
+
+        Pool pool = poolFactory.build(null);
+        Properties properties = poolEngine.makeProperties(pool, jmsHeaders);
+        boolean resultCreate = driver.create(properties);
+        driver.getAll(properties);
+        fakeFarmClient.deleteAll();
+        boolean resultExistFromCache = driver.exist(properties);
+        boolean resultRemove = driver.remove(properties);
+        boolean resultNotExist = !driver.exist(properties);
+
+        Assert.isTrue(resultCreate && resultExistFromCache && resultRemove && resultNotExist);
+    }
+
 }
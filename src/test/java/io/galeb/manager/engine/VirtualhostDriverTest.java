@@ -21,6 +21,7 @@ package io.galeb.manager.engine;
 import io.galeb.manager.common.Properties;
 import io.galeb.manager.engine.driver.Driver;
 import io.galeb.manager.engine.driver.DriverBuilder;
+import io.galeb.manager.engine.driver.EntityKey;
 import io.galeb.manager.engine.driver.impl.GalebV32Driver;
 import io.galeb.manager.engine.listeners.VirtualHostEngine;
 import io.galeb.manager.entity.Rule;
@@ -97,21 +98,15 @@ public class VirtualhostDriverTest {
         String virtualhostName = UUID.randomUUID().toString();
         VirtualHost virtualHost = virtualhostFactory.build(virtualhostName);
         Properties properties = virtualhostEngine.makeProperties(virtualhostFactory.build(virtualhostName), jmsHeaders);
-        String api = properties.getOrDefault(API_PROP, "UNDEF").toString();
-        String virtualHostName = virtualHost.getName();
+        EntityKey multiMapKey = new EntityKey("virtualhost", virtualHost.getName(), "");
 
         // when
         virtualhostEngine.create(virtualHost, jmsHeaders);
-        String multiMapKey = api + "/virtualhost/" + virtualHostName + "@";
-        Map<String, String> map = driver.getAll(properties).get("virtualhost").get(multiMapKey);
-        String versionStr = map.get("version");
-        int versionOrig = Integer.parseInt(versionStr);
+        int versionOrig = driver.getAll(properties).get("virtualhost").get(multiMapKey).getVersion();
         boolean resultExist = driver.exist(properties);
         virtualHost.updateHash();
         virtualhostEngine.update(virtualHost, jmsHeaders);
-        map = driver.getAll(properties).get("virtualhost").get(multiMapKey);
-        versionStr = map.get("version");
-        int versionNew = Integer.parseInt(versionStr);
+        int versionNew = driver.getAll(properties).get("virtualhost").get(multiMapKey).getVersion();
 
         // then
         boolean isNewVersionGreaterThenOldVersion = versionNew > versionOrig;
@@ -0,0 +1,80 @@
+/*
+ * Galeb - Load Balance as a Service Plataform
+ *
+ * Copyright (C) 2014-2016 Globo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ */
+package io.galeb.manager.engine.driver.impl;
+
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+public class ApiThrottleTest {
+
+    @Test
+    public void failureHalvesLimitsAndSuccessGrowsThemBack() {
+        final ApiThrottle throttle = new ApiThrottle("api.dev.local");
+        Assert.isTrue(acquire(throttle));
+        throttle.release(10L, false);
+
+        Assert.isTrue(throttle.rate() == Math.round(ApiThrottle.MAX_RATE / 2.0));
+        Assert.isTrue(throttle.concurrency() == Math.max(1, ApiThrottle.MAX_CONCURRENCY / 2));
+
+        final long tightened = throttle.rate();
+        Assert.isTrue(acquire(throttle));
+        throttle.release(10L, false);
+        Assert.isTrue(throttle.rate() == tightened);
+
+        for (int i = 0; i < 20; i++) {
+            Assert.isTrue(acquire(throttle));
+            throttle.release(10L, true);
+        }
+        Assert.isTrue(throttle.concurrency() > Math.max(1, ApiThrottle.MAX_CONCURRENCY / 2));
+    }
+
+    @Test
+    public void exhaustedThrottleHandsBackADelayInsteadOfBlocking() {
+        final ApiThrottle throttle = new ApiThrottle("api.dev.local");
+        for (int i = 0; i < ApiThrottle.MAX_CONCURRENCY; i++) {
+            Assert.isTrue(acquire(throttle));
+        }
+        Assert.isTrue(throttle.tryAcquire() > 0L);
+
+        for (int i = 0; i < ApiThrottle.MAX_CONCURRENCY; i++) {
+            throttle.release(10L, false);
+        }
+        final long tightened = throttle.rate();
+        Assert.isTrue(acquire(throttle));
+        throttle.release(10L, true);
+        Assert.isTrue(throttle.rate() == Math.round(Math.min(ApiThrottle.MAX_RATE, tightened + ApiThrottle.STEP)));
+    }
+
+    private boolean acquire(final ApiThrottle throttle) {
+        for (int tries = 0; tries < 100; tries++) {
+            final long delay = throttle.tryAcquire();
+            if (delay == 0L) {
+                return true;
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Galeb - Load Balance as a Service Plataform
+ *
+ * Copyright (C) 2014-2016 Globo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ */
+package io.galeb.manager.engine.util;
+
+import io.galeb.manager.engine.driver.DiffEntry;
+import io.galeb.manager.engine.driver.EntityKey;
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static io.galeb.manager.engine.driver.Driver.ActionOnDiff.CREATE;
+import static io.galeb.manager.engine.driver.Driver.ActionOnDiff.REMOVE;
+import static io.galeb.manager.engine.driver.Driver.ActionOnDiff.UPDATE;
+
+public class FixPlannerTest {
+
+    @Test
+    public void createsFollowDependenciesAndRemovesGoBackwards() {
+        final List<DiffEntry> diff = Arrays.asList(
+                new DiffEntry(REMOVE, new EntityKey("backendpool", "oldpool", "")),
+                new DiffEntry(CREATE, new EntityKey("rule", "rule1", "vh1")),
+                new DiffEntry(REMOVE, new EntityKey("rule", "oldrule", "vh1")),
+                new DiffEntry(CREATE, new EntityKey("backend", "http://127.0.0.1:8080", "pool1")),
+                new DiffEntry(UPDATE, new EntityKey("virtualhost", "vh1", "")),
+                new DiffEntry(CREATE, new EntityKey("backendpool", "pool1", "")),
+                new DiffEntry(CREATE, new EntityKey("backend", "http://127.0.0.1:8081", "pool1")));
+
+        final List<FixPlanner.Level> plan = FixPlanner.plan(diff);
+
+        Assert.isTrue(plan.size() == 6);
+        assertLevel(plan.get(0), false, "backendpool", 1);
+        assertLevel(plan.get(1), false, "backend", 2);
+        assertLevel(plan.get(2), false, "virtualhost", 1);
+        assertLevel(plan.get(3), false, "rule", 1);
+        assertLevel(plan.get(4), true, "rule", 1);
+        assertLevel(plan.get(5), true, "backendpool", 1);
+    }
+
+    @Test
+    public void levelMilestoneCompletesWhenItsFixesAreDone() {
+        final long farmId = 1L;
+        final String api = "api.dev.local";
+        try {
+            FixTracker.start(farmId, api);
+            FixTracker.expect(farmId, api, 3);
+            Assert.isTrue(!FixTracker.whenPendingAtMost(farmId, api, 1).isDone());
+
+            FixTracker.fixed(farmId, api);
+            FixTracker.fixed(farmId, api);
+
+            Assert.isTrue(FixTracker.whenPendingAtMost(farmId, api, 1).isDone());
+            Assert.isTrue(!FixTracker.whenDone(farmId, api).isDone());
+        } finally {
+            FixTracker.remove(farmId, api);
+        }
+    }
+
+    private void assertLevel(FixPlanner.Level level, boolean remove, String entityType, int size) {
+        Assert.isTrue(level.isRemove() == remove);
+        Assert.isTrue(level.size() == size);
+        level.getEntries().forEach(diffEntry -> Assert.isTrue(entityType.equals(diffEntry.getEntityType())));
+    }
+}
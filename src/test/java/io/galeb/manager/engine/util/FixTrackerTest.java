@@ -0,0 +1,67 @@
+/*
+ * Galeb - Load Balance as a Service Plataform
+ *
+ * Copyright (C) 2014-2016 Globo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ */
+package io.galeb.manager.engine.util;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.CompletableFuture;
+
+public class FixTrackerTest {
+
+    private static final long FARM_ID = 1L;
+    private static final long OTHER_FARM_ID = 2L;
+    private static final String API = "api.dev.local";
+
+    @After
+    public void cleanUp() {
+        FixTracker.remove(FARM_ID, API);
+        FixTracker.remove(OTHER_FARM_ID, API);
+    }
+
+    @Test
+    public void completesWhenLastFixIsDone() {
+        FixTracker.start(FARM_ID, API);
+        final CompletableFuture<Void> done = FixTracker.whenDone(FARM_ID, new String[] { API });
+        Assert.isTrue(FixTracker.pending(FARM_ID, API) == FixTracker.DIFFING);
+
+        FixTracker.expect(FARM_ID, API, 2);
+        FixTracker.fixed(FARM_ID, API);
+        Assert.isTrue(!done.isDone());
+
+        FixTracker.fixed(FARM_ID, API);
+        Assert.isTrue(done.isDone());
+        Assert.isTrue(FixTracker.pending(FARM_ID, API) == 0);
+    }
+
+    @Test
+    public void farmsSharingAnApiDoNotCollide() {
+        FixTracker.start(FARM_ID, API);
+        FixTracker.expect(FARM_ID, API, 1);
+        FixTracker.start(OTHER_FARM_ID, API);
+
+        FixTracker.fixed(OTHER_FARM_ID, API);
+
+        Assert.isTrue(FixTracker.pending(FARM_ID, API) == 1);
+        Assert.isTrue(FixTracker.pending(OTHER_FARM_ID, API) == FixTracker.DIFFING);
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Galeb - Load Balance as a Service Plataform
+ *
+ * Copyright (C) 2014-2016 Globo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ */
+package io.galeb.manager.engine.util;
+
+import io.galeb.manager.engine.driver.EntityKey;
+import io.galeb.manager.engine.driver.RemoteEntity;
+import org.junit.Test;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SyncFingerprintTest {
+
+    private static final String API = "api.dev.local";
+
+    @Test
+    public void localFingerprintIgnoresOrderButNotContent() {
+        final LocalEntity pool1 = new LocalEntity(1L, "pool1", 10, true);
+        final LocalEntity pool2 = new LocalEntity(2L, "pool2", 20, true);
+
+        final long fingerprint = SyncFingerprint.ofLocal(local(pool1, pool2));
+
+        Assert.isTrue(fingerprint == SyncFingerprint.ofLocal(local(pool2, pool1)));
+        Assert.isTrue(fingerprint != SyncFingerprint.ofLocal(local(pool1, new LocalEntity(2L, "pool2", 21, true))));
+    }
+
+    @Test
+    public void remoteFingerprintFollowsVersionAndEtag() {
+        final long fingerprint = SyncFingerprint.ofRemote(remote(1, "a"));
+
+        Assert.isTrue(fingerprint == SyncFingerprint.ofRemote(remote(1, "a")));
+        Assert.isTrue(fingerprint != SyncFingerprint.ofRemote(remote(2, "a")));
+        Assert.isTrue(fingerprint != SyncFingerprint.ofRemote(remote(1, "b")));
+    }
+
+    @Test
+    public void skipsOnlyWhenBothSidesMatchTheLastConsistentDiff() {
+        final long farmId = 1L;
+        try {
+            Assert.isTrue(!SyncFingerprint.isUnchanged(farmId, API, 1L, 2L));
+            SyncFingerprint.consistent(farmId, API, 1L, 2L);
+            Assert.isTrue(SyncFingerprint.isUnchanged(farmId, API, 1L, 2L));
+            Assert.isTrue(!SyncFingerprint.isUnchanged(farmId, API, 1L, 3L));
+            Assert.isTrue(!SyncFingerprint.isUnchanged(farmId, API, 4L, 2L));
+        } finally {
+            SyncFingerprint.forget(farmId, API);
+        }
+    }
+
+    private Map<String, List<?>> local(LocalEntity... pools) {
+        final Map<String, List<?>> entitiesMap = new HashMap<>();
+        entitiesMap.put("backendpool", Arrays.asList(pools));
+        return entitiesMap;
+    }
+
+    private Map<String, Map<EntityKey, RemoteEntity>> remote(int version, String etag) {
+        final EntityKey key = new EntityKey("backendpool", "pool1", "");
+        final Map<EntityKey, RemoteEntity> remoteMap = new LinkedHashMap<>();
+        remoteMap.put(key, new RemoteEntity(key, 1L, version, etag, null));
+        return Collections.singletonMap("backendpool", remoteMap);
+    }
+}
@@ -23,6 +23,11 @@ import io.galeb.manager.cucumber.CucumberTest;
 import io.galeb.manager.cache.DistMapTest;
 import io.galeb.manager.engine.FarmDriverTest;
 import io.galeb.manager.engine.PoolDriverTest;
+import io.galeb.manager.engine.driver.impl.ApiThrottleTest;
+import io.galeb.manager.engine.util.FixPlannerTest;
+import io.galeb.manager.engine.util.FixTrackerTest;
+import io.galeb.manager.engine.util.RetryQueueTest;
+import io.galeb.manager.engine.util.SyncFingerprintTest;
 import io.galeb.manager.entity.AbstractEntitySyncronizableTest;
 import io.galeb.manager.handlers.VirtualHostHandlerTest;
 import org.apache.ignite.Ignite;
@@ -34,6 +39,11 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
         FarmDriverTest.class,
         PoolDriverTest.class,
+        ApiThrottleTest.class,
+        FixTrackerTest.class,
+        FixPlannerTest.class,
+        RetryQueueTest.class,
+        SyncFingerprintTest.class,
         AbstractEntitySyncronizableTest.class,
         VirtualHostHandlerTest.class,
         DistMapTest.class,